@@ -0,0 +1,38 @@
+package benchmarks;
+
+import geneticsteps.Population;
+import io.CohortGenerator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Creates reproducible cohorts and populations for benchmarks, so that every run measures the same data.
+ */
+public class BenchmarkCohort {
+
+    public static final long SEED = 42;
+    public static final int POPULATION_SIZE = 50; // Same as Main.POPULATION_SIZE.
+    public static final int OFFSPRING_COUNT = 46; // Same as Main.OFFSPRING_COUNT for a population of 50.
+
+    /**
+     * Sets up a cohort of {@param size} Persons split into {@param groupCount} groups, and returns an initial population for it.
+     */
+    public static Population createPopulation(int size, int groupCount) {
+        CohortGenerator.SyntheticCohort cohort = new CohortGenerator(SEED).generate(size);
+        return Population.initialise(size, POPULATION_SIZE, groupCount, cohort.persons, cohort.aggregate, cohort.distribute, new SplittableRandom(SEED));
+    }
+
+    /**
+     * Returns {@param count} pairs of random indexes of a gene of length {@param length}, each pair ordered (start <= end).
+     */
+    public static int[][] createPoints(int count, int length, SplittableRandom random) {
+        int[][] points = new int[count][2];
+        for (int[] pair : points) {
+            int first = random.nextInt(length);
+            int second = random.nextInt(length);
+            pair[0] = Math.min(first, second);
+            pair[1] = Math.max(first, second);
+        }
+        return points;
+    }
+}
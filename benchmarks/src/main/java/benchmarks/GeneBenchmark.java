@@ -0,0 +1,86 @@
+package benchmarks;
+
+import geneticsteps.Gene;
+import geneticsteps.Population;
+import geneticsteps.ScoreCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks operations on a single gene: scoring, Crossover and invert Mutation.
+ * With cacheCapacity = 0 every call scores groups from scratch, otherwise repeated groupings are mostly taken from the score caches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneBenchmark {
+
+    private static final int POINT_COUNT = 1024; // No. of random index pairs cycled through by each benchmark.
+
+    @Param({"36", "500", "5000"})
+    public int cohortSize;
+
+    @Param({"4", "9", "18"})
+    public int groupCount;
+
+    @Param({"0", "65536"})
+    public int cacheCapacity;
+
+    private int[] gene;
+    private Gene parent1;
+    private Gene parent2;
+    private Gene child;
+    private int[][] points;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ScoreCache.FITNESS_CAPACITY = cacheCapacity;
+        ScoreCache.GROUP_CAPACITY = cacheCapacity;
+        Population population = BenchmarkCohort.createPopulation(cohortSize, groupCount);
+
+        parent1 = population.getGenes().get(0);
+        parent2 = population.getGenes().get(1);
+        child = population.getGenePool().acquire();
+        gene = Gene.getShuffledBase(new SplittableRandom(BenchmarkCohort.SEED));
+        points = BenchmarkCohort.createPoints(POINT_COUNT, cohortSize, new SplittableRandom(BenchmarkCohort.SEED));
+    }
+
+    private int[] nextPoints() {
+        next = (next + 1) & (POINT_COUNT - 1);
+        return points[next];
+    }
+
+    @Benchmark
+    public double calculateFitness() {
+        return Gene.calculateFitness(gene);
+    }
+
+    @Benchmark
+    public Gene crossParent() {
+        int[] pair = nextPoints();
+        return parent1.crossParent(parent2, pair[0], pair[1], child);
+    }
+
+    @Benchmark
+    public Gene mutateInvert() {
+        int[] pair = nextPoints();
+        return parent1.mutateInvert(pair[0], pair[1]);
+    }
+}
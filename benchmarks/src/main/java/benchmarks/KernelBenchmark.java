@@ -0,0 +1,89 @@
+package benchmarks;
+
+import geneticsteps.CostMatrix;
+import geneticsteps.Gene;
+import geneticsteps.ScoreCache;
+import io.CohortGenerator;
+import model.Cohort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the SCALAR and FUSED fMix kernels of Cohort.
+ * pairMix measures fMix of random pairs on its own, calculateFitness scores a whole gene of a cohort too large for
+ * pair costs to be precomputed, where fMix of every pair is calculated on demand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KernelBenchmark {
+
+    private static final int POINT_COUNT = 1024; // No. of random pairs summed by each call of pairMix.
+
+    @Param({"SCALAR", "FUSED"})
+    public Cohort.Kernel kernel;
+
+    @Param({"6000"})
+    public int cohortSize;
+
+    @Param({"18"})
+    public int groupCount;
+
+    private Cohort.Kernel previousKernel;
+    private int previousMaxLength;
+    private Cohort cohort;
+    private int[][] points;
+    private int[] gene;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        previousKernel = Cohort.KERNEL;
+        previousMaxLength = CostMatrix.MAX_PRECOMPUTED_LENGTH;
+        Cohort.KERNEL = kernel;
+        CostMatrix.MAX_PRECOMPUTED_LENGTH = Math.min(previousMaxLength, cohortSize - 1);
+        ScoreCache.GROUP_CAPACITY = 0;
+
+        CohortGenerator.SyntheticCohort synthetic = new CohortGenerator(BenchmarkCohort.SEED).generate(cohortSize);
+        cohort = new Cohort(synthetic.persons);
+        Gene.setBaseInfo(cohortSize, groupCount, synthetic.persons, synthetic.aggregate, synthetic.distribute);
+        points = BenchmarkCohort.createPoints(POINT_COUNT, cohortSize, new SplittableRandom(BenchmarkCohort.SEED));
+        gene = Gene.getShuffledBase(new SplittableRandom(BenchmarkCohort.SEED));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Cohort.KERNEL = previousKernel;
+        CostMatrix.MAX_PRECOMPUTED_LENGTH = previousMaxLength;
+    }
+
+    @Benchmark
+    public double pairMix() {
+        double sum = 0;
+        for (int[] pair : points) {
+            sum += cohort.calcMix(pair[0], pair[1]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double calculateFitness() {
+        return Gene.calculateFitness(gene);
+    }
+}
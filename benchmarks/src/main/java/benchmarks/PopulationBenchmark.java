@@ -0,0 +1,58 @@
+package benchmarks;
+
+import geneticsteps.Gene;
+import geneticsteps.Population;
+import geneticsteps.Stochastic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks operations on a whole population: Stochastic Universal Sampling and elitism.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PopulationBenchmark {
+
+    @Param({"36", "500", "5000"})
+    public int cohortSize;
+
+    @Param({"4", "9", "18"})
+    public int groupCount;
+
+    private Population population;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        population = BenchmarkCohort.createPopulation(cohortSize, groupCount);
+        random = new SplittableRandom(BenchmarkCohort.SEED);
+    }
+
+    @Benchmark
+    public List<Gene> selectGenes() {
+        return Stochastic.selectGenesTest(population, BenchmarkCohort.OFFSPRING_COUNT, random);
+    }
+
+    @Benchmark
+    public List<Gene> getFittestGenes() {
+        return population.getFittestGenes(BenchmarkCohort.POPULATION_SIZE - BenchmarkCohort.OFFSPRING_COUNT);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import geneticsteps.GeneContext;
+import geneticsteps.Repair;
+import io.CohortGenerator;
+import model.Person;
+import model.Weight;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Checks that hard-constraint repair turns any gene into a feasible one, on small random cohorts whose Persons are aggregated,
+ * distributed, both or neither at random. Every instance has feasible genes, so each repaired gene must have no violations left,
+ * still hold every Person once and need no further repair. Exits with status 1 if any gene fails, e.g.
+ * {@code java -cp benchmarks/target/benchmarks.jar benchmarks.RepairCheck}
+ */
+public class RepairCheck {
+
+    private static final int INSTANCES = 2000;
+    private static final int GENES = 30; // Random genes repaired per instance.
+
+    public static void main(String[] args) {
+        SplittableRandom random = new SplittableRandom(BenchmarkCohort.SEED);
+        int failures = 0;
+        for (int instance = 0; instance < INSTANCES; instance++) {
+            int size = 6 + random.nextInt(60);
+            int groups = 1 + random.nextInt(size / 2);
+            List<Person> persons = new CohortGenerator(random.nextLong()).generate(size).persons;
+            double aggregateShare = random.nextDouble() * 0.6;
+            double distributeShare = random.nextDouble() * 0.6;
+            int[] aggregate = persons.stream().filter(person -> random.nextDouble() < aggregateShare).mapToInt(Person::getId).toArray();
+            int[] distribute = persons.stream().filter(person -> random.nextDouble() < distributeShare).mapToInt(Person::getId).toArray();
+            GeneContext context = new GeneContext(size, groups, persons, aggregate, distribute, Weight.getProfile(), true);
+            Repair repair = context.getRepair();
+
+            for (int i = 0; i < GENES; i++) {
+                int[] gene = context.getShuffledBase(random);
+                int[] original = gene.clone();
+                repair.repair(gene);
+                String error = check(repair, gene);
+                if (error != null) {
+                    System.err.println(size + " Persons in " + groups + " groups, aggregate " + Arrays.toString(aggregate) + ", distribute "
+                            + Arrays.toString(distribute) + ", gene " + Arrays.toString(original) + ": " + error);
+                    failures++;
+                }
+            }
+        }
+        System.out.println(failures > 0 ? "FAILED (" + failures + " genes)" : "OK");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns what is wrong with {@param gene} after it was repaired by {@param repair}, or null if it is a feasible arrangement of every Person.
+     */
+    private static String check(Repair repair, int[] gene) {
+        int[] sorted = gene.clone();
+        Arrays.sort(sorted);
+        if (!Arrays.equals(sorted, IntStream.range(0, gene.length).toArray())) {
+            return "repair lost or duplicated Persons";
+        }
+        int violations = repair.countViolations(gene);
+        if (violations > 0) {
+            return violations + " violations left after repair";
+        }
+        int swaps = repair.repair(gene);
+        if (swaps > 0) {
+            return "feasible gene repaired again with " + swaps + " swaps";
+        }
+        return null;
+    }
+}
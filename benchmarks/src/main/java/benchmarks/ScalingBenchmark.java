@@ -0,0 +1,172 @@
+package benchmarks;
+
+import engine.GeneticEngine;
+import geneticsteps.Gene;
+import geneticsteps.Population;
+import io.CohortGenerator;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * End-to-end scaling benchmark, runs the whole genetic algorithm on synthetic cohorts and writes one CSV row per configuration.
+ * Sweeps cohort size, no. of groups, population size and no. of threads, with settings passed as key=value arguments, e.g.
+ * {@code java -cp benchmarks/target/benchmarks.jar benchmarks.ScalingBenchmark sizes=36,500 groups=9 threads=1,4 out=scaling.csv}
+ * Time to target is the time taken to first reach the target fitness, or 99% of the final best fitness of the run if no target is given.
+ */
+public class ScalingBenchmark {
+
+    private static final String HEADER = "cohortSize,groups,population,threads,seed,generations,setupMs,runMs,"
+            + "generationsPerSec,evaluationsPerSec,peakHeapMB,bestFitness,targetFitness,timeToTargetMs";
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            settings.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+
+        int[] sizes = parseInts(settings.getOrDefault("sizes", "36,500,5000"));
+        int[] groups = parseInts(settings.getOrDefault("groups", "9"));
+        int[] populations = parseInts(settings.getOrDefault("populations", "50"));
+        int[] threads = parseInts(settings.getOrDefault("threads", "1," + Runtime.getRuntime().availableProcessors()));
+        int generations = Integer.parseInt(settings.getOrDefault("generations", "200"));
+        int warmup = Integer.parseInt(settings.getOrDefault("warmup", "20")); // Generations run and discarded before each measurement.
+        int repeats = Integer.parseInt(settings.getOrDefault("repeats", "1"));
+        long seed = Long.parseLong(settings.getOrDefault("seed", "1"));
+        double target = Double.parseDouble(settings.getOrDefault("target", "NaN"));
+        String out = settings.get("out");
+
+        try (PrintStream file = out == null ? null : new PrintStream(new FileOutputStream(out))) {
+            emit(file, HEADER);
+            for (int size : sizes) {
+                for (int groupCount : groups) {
+                    // Every group needs at least 2 members for pair costs to mean anything.
+                    if (groupCount * 2 > size) {
+                        System.err.println("Skipping " + groupCount + " groups for cohort of " + size);
+                        continue;
+                    }
+                    for (int populationSize : populations) {
+                        for (int threadCount : threads) {
+                            for (int repeat = 0; repeat < repeats; repeat++) {
+                                long runSeed = seed + repeat;
+                                if (warmup > 0) {
+                                    run(size, groupCount, populationSize, threadCount, runSeed, warmup, target);
+                                }
+                                emit(file, run(size, groupCount, populationSize, threadCount, runSeed, generations, target));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the genetic algorithm for {@param generations} generations on a synthetic cohort generated from {@param seed}.
+     * @return CSV row of results.
+     */
+    private static String run(int size, int groupCount, int populationSize, int threadCount, long seed, int generations, double target) {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        long setupStart = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        CohortGenerator.SyntheticCohort cohort = new CohortGenerator(random.nextLong()).generate(size);
+        Population population = Population.initialise(size, populationSize, groupCount, cohort.persons,
+                cohort.aggregate, cohort.distribute, random.split());
+        int offspringCount = getOffspringCount(populationSize);
+        ForkJoinPool executor = threadCount > 1 ? new ForkJoinPool(threadCount) : null;
+        GeneticEngine engine = new GeneticEngine(population, size, offspringCount, 0.9, 0.09, random.nextLong(), threadCount, executor);
+        long setupNanos = System.nanoTime() - setupStart;
+
+        // Best fitness after each generation and when it was reached, to find time to target afterwards.
+        double[] best = new double[generations];
+        long[] elapsed = new long[generations];
+        long evaluationsBefore = Gene.getEvaluationCount();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < generations; i++) {
+                engine.nextGeneration();
+                best[i] = engine.getFittestGene().getFitness();
+                elapsed[i] = System.nanoTime() - start;
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        long runNanos = System.nanoTime() - start;
+        long evaluations = Gene.getEvaluationCount() - evaluationsBefore;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        double finalBest = best[generations - 1];
+        double targetFitness = Double.isNaN(target) ? finalBest * 0.99 : target;
+        long timeToTarget = -1; // -1 if target was never reached.
+        for (int i = 0; i < generations; i++) {
+            if (best[i] >= targetFitness) {
+                timeToTarget = elapsed[i];
+                break;
+            }
+        }
+
+        double runSeconds = runNanos / 1e9;
+        String row = String.format("%d,%d,%d,%d,%d,%d,%.1f,%.1f,%.2f,%.1f,%.1f,%.10f,%.10f,%.1f",
+                size, groupCount, populationSize, threadCount, seed, generations, setupNanos / 1e6, runNanos / 1e6,
+                generations / runSeconds, evaluations / runSeconds, peakHeap / (1024.0 * 1024.0), finalBest, targetFitness,
+                timeToTarget < 0 ? -1.0 : timeToTarget / 1e6);
+        System.err.println(row);
+        return row;
+    }
+
+    /**
+     * Same as Main.getOffspringCount, for a population of {@param populationSize} genes.
+     */
+    private static int getOffspringCount(int populationSize) {
+        int count = (int) (populationSize * 0.9);
+        return (count % 2) == 0 ? count : count + 1;
+    }
+
+    private static int[] parseInts(String values) {
+        String[] parts = values.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseInt(parts[i].trim());
+        }
+        return result;
+    }
+
+    /**
+     * Writes {@param line} to stdout, and to {@param file} if there is one.
+     */
+    private static void emit(PrintStream file, String line) {
+        System.out.println(line);
+        if (file != null) {
+            file.println(line);
+            file.flush();
+        }
+    }
+}
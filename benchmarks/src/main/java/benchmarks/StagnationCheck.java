@@ -0,0 +1,79 @@
+package benchmarks;
+
+import engine.GeneticEngine;
+import geneticsteps.Population;
+import io.CohortGenerator;
+import termination.Stagnation;
+import termination.TerminationPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that a Stagnation rule only ends runs that have really stopped improving, on synthetic cohorts of several seeds.
+ * Each run records the best fitness of every generation, and fails if it was stopped while best fitness still improved (by more than
+ * the rule's epsilon) within the last window of generations. Exits with status 1 if any run fails, e.g.
+ * {@code java -cp benchmarks/target/benchmarks.jar benchmarks.StagnationCheck}
+ */
+public class StagnationCheck {
+
+    private static final int SIZE = 300;
+    private static final int GROUPS = 60;
+    private static final int WINDOW = 50; // STAGNATION_GENERATIONS of each run.
+    private static final int MAX_GENERATIONS = 2000;
+
+    public static void main(String[] args) {
+        boolean failed = false;
+        for (long seed = 1; seed <= 8; seed++) {
+            for (double epsilon : new double[]{0, 1e-6, 1e-3}) {
+                String error = run(seed, epsilon);
+                if (error != null) {
+                    System.err.println("seed " + seed + ", epsilon " + epsilon + ": " + error);
+                    failed = true;
+                }
+            }
+        }
+        System.out.println(failed ? "FAILED" : "OK");
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a cohort generated from {@param seed} until a Stagnation rule of {@param epsilon} ends it.
+     * @return Description of the failure, or null if the run was ended correctly.
+     */
+    private static String run(long seed, double epsilon) {
+        SplittableRandom random = new SplittableRandom(seed);
+        CohortGenerator.SyntheticCohort cohort = new CohortGenerator(random.nextLong()).generate(SIZE);
+        Population population = Population.initialise(SIZE, BenchmarkCohort.POPULATION_SIZE, GROUPS, cohort.persons,
+                cohort.aggregate, cohort.distribute, random.split());
+        GeneticEngine engine = new GeneticEngine(population, SIZE, BenchmarkCohort.OFFSPRING_COUNT, 0.9, 0.09, random.nextLong(), 1, null);
+        TerminationPolicy policy = new TerminationPolicy().add(new Stagnation(WINDOW, epsilon));
+
+        List<Double> best = new ArrayList<>(); // Best fitness before each check, starting with the initial population.
+        best.add(engine.getFittestGene().getFitness());
+        while (!policy.shouldStop(engine)) {
+            if (engine.getGeneration() >= MAX_GENERATIONS) {
+                return null;
+            }
+            engine.nextGeneration();
+            best.add(engine.getFittestGene().getFitness());
+        }
+
+        int stopped = engine.getGeneration();
+        if (stopped < WINDOW) {
+            return "stopped after " + stopped + " generations, before a full window";
+        }
+        double baseline = Double.NEGATIVE_INFINITY; // Best fitness up to the start of the last window.
+        for (int i = 0; i <= stopped - WINDOW; i++) {
+            baseline = Math.max(baseline, best.get(i));
+        }
+        double last = best.get(stopped);
+        if (last > baseline + Math.abs(baseline) * epsilon) {
+            return "stopped after " + stopped + " generations although best fitness improved from " + baseline + " to " + last;
+        }
+        return null;
+    }
+}
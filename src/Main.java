@@ -1,33 +1,123 @@
-import java.io.FileInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 
-import geneticsteps.Crossover;
+import engine.BatchRunner;
+import engine.Checkpoint;
+import engine.CheckpointWriter;
+import engine.Decomposition;
+import engine.GeneticEngine;
+import engine.IslandModel;
+import engine.JobResult;
+import engine.MatchingJob;
+import engine.WeightSweep;
 import geneticsteps.Gene;
+import geneticsteps.GeneContext;
+import geneticsteps.Initialiser;
 import geneticsteps.Population;
-import geneticsteps.Stochastic;
+import geneticsteps.ScoreCache;
+import geneticsteps.WarmStart;
+import io.CohortGenerator;
+import io.CohortLoader;
+import metrics.FileMetricsSink;
+import metrics.JfrMetricsSink;
+import metrics.MetricsSink;
+import output.AsyncOutput;
+import output.Results;
+import output.Verbosity;
+import termination.AdaptiveResponse;
+import termination.Budget;
+import termination.DiversityCollapse;
+import termination.Stagnation;
+import termination.TargetFitness;
+import termination.TerminationPolicy;
 import model.Person;
 import model.Weight;
-import utils.Pair;
+import model.WeightProfile;
 
 
 public class Main {
 
     public static String FILE_LOCATION = "src\\data\\userdata.xlsx";
     public static int POPULATION_SIZE = 50; // No. of genes in each population.
-    public static int GENE_LENGTH = 36; // No. of Person objects in each gene.
+    public static int GENE_LENGTH = 36; // No. of Person objects in each gene, set to no. of rows in the excel file when it is read.
     public static int GROUP_NUMBER = 9; // No. of equal sized groups to split Person objects into.
     public static int GENERATION_COUNT = 500; // Max no. of generations to run.
     public static double GENERATION_GAP = 0.9; // Ratio of children to parents in next generation, must be 0 < x < 1. POPULATION_SIZE * GENERATION_GAP = no. of child genes needed. Remaining space is saved for fittest parents.
     public static int OFFSPRING_COUNT = getOffspringCount(); // No. of offspring, must be multiple of 2.
     public static double CROSSOVER_PROBABILITY = 0.9; // Chance of crossover operation.
     public static double MUTATION_PROBABILITY = 0.09; // Chance of applying either mutation operations.
+    public static int THREAD_COUNT = Runtime.getRuntime().availableProcessors(); // No. of threads to run each generation on, results are only reproducible for the same value.
+    public static long SEED = System.nanoTime(); // Master seed for all random no. generation, set to a fixed value to reproduce a run.
+    public static boolean DISTINCT_SELECTION = false; // Whether genes forming the same groups can only be selected once as parents.
+    public static boolean DISTINCT_ELITES = false; // Whether genes forming the same groups can only be kept once during elitism.
+    // No. of fittest genes improved by swapping Persons between groups each generation, 0 to disable. Each thread keeps cohort size x
+    // no. of groups pair costs (8 bytes each) while doing so, which is limited to Gene.MAX_CLIMB_COSTS (e.g. 5000 Persons in 838 groups).
+    public static int LOCAL_SEARCH_GENES = 0;
+    public static int LOCAL_SEARCH_SWAPS = 100; // Max no. of swaps applied to each of those genes per generation.
+    public static boolean BEST_IMPROVEMENT = false; // Whether local search applies the best possible swap each time, rather than the first improving swap found.
+    public static double INITIAL_CONSTRAINED_SHARE = 0; // Share of initial genes placing aggregated Persons together and distributed Persons apart, then balancing the rest.
+    public static double INITIAL_GREEDY_SHARE = 0; // Share of initial genes filling each group with the Persons adding the least pair cost.
+    public static double INITIAL_BALANCED_SHARE = 0; // Share of initial genes dealing Persons sorted by characteristics to groups in turn, remaining genes are random.
+    public static int SYNTHETIC_COHORT_SIZE = 0; // If > 0, a synthetic cohort of this size generated from SEED is used instead of the excel file.
+    public static int[] AGGREGATE = {}; // Ids of Persons to be grouped together, set by the synthetic cohort generator if used.
+    public static int[] DISTRIBUTE = {}; // Ids of Persons to be separated, set by the synthetic cohort generator if used.
+    public static boolean HARD_CONSTRAINTS = false; // Whether AGGREGATE and DISTRIBUTE must always hold, rather than being weighed by WEIGHT_DISTRIBUTION.
+    public static String METRICS_FILE = ""; // If set, statistics of every generation are written to this file (JSON lines if it ends with .jsonl, otherwise CSV).
+    public static Verbosity VERBOSITY = Verbosity.PROGRESS; // Amount of output, DEBUG also prints the initial and final population.
+    public static String OUTPUT_FILE = ""; // If set, output is written to this file instead of stdout.
+    public static String RESULT_FILE = ""; // If set, the final result is also written to this file as JSON (group of each Person Id).
+    public static boolean METRICS_JFR = false; // Whether statistics of every generation are emitted as JFR events, recorded when run with -XX:StartFlightRecording.
+
+    // Weight settings, see WeightProfile for the format of profile files.
+    public static String WEIGHT_PROFILE = ""; // If set, fitness is calculated with the profile in this file instead of the constants in Weight.
+    public static String[] SWEEP_PROFILES = {}; // Profiles the best grouping is also reported for, missing weights are taken from the profile of the run. Must weigh characteristics the same.
+    public static int SWEEP_CANDIDATES = 5; // No. of fittest genes of each generation scored under every sweep profile.
+
+    // Termination settings, a run ends after GENERATION_COUNT generations or as soon as any of the following is met.
+    public static long TIME_BUDGET_MILLIS = 0; // Max wall-clock time of a run (of each island), 0 for no limit.
+    public static long EVALUATION_BUDGET = 0; // Max no. of genes created by Crossover or Mutation in a run (by each island), 0 for no limit. Local search swaps do not count.
+    public static double TARGET_FITNESS = 0; // Fitness at which a run ends, 0 for no target.
+    public static int STAGNATION_GENERATIONS = 0; // No. of generations without improvement after which a run ends, 0 to disable.
+    public static double STAGNATION_EPSILON = 1e-6; // Min. improvement of best fitness (relative to best fitness) that resets stagnation.
+    public static int STAGNATION_RESPONSES = 0; // No. of times stagnation multiplies mutation chance by MUTATION_BOOST instead of ending the run.
+    public static double MUTATION_BOOST = 2; // Factor mutation chance is raised by in response to stagnation, up to a chance of 0.5.
+    public static double MIN_DIVERSITY = 0; // Ratio of distinct groupings in the population below which a run ends, 0 to disable.
+    public static int DIVERSITY_RESPONSES = 0; // No. of times low diversity replaces RESEED_FRACTION of the population with random genes instead of ending the run.
+    public static double RESEED_FRACTION = 0.5; // Fraction of the population (least fit genes first) replaced in response to low diversity.
+
+    // Warm start settings, to re-match a cohort after a few Persons joined or left instead of starting from random genes.
+    public static String WARM_START_FILE = ""; // If set, the population is seeded from the result in this file (RESULT_FILE of a previous run).
+    public static int WARM_START_SWAPS = 3; // Max no. of random swaps between groups applied to each seeded gene.
+    public static int WARM_START_GENERATIONS = 50; // Max no. of generations of a warm started run, if less than GENERATION_COUNT.
+
+    // Checkpoint settings, to resume a long run after a crash or restart with exactly the same results.
+    public static String CHECKPOINT_FILE = ""; // If set, the state of the run is saved to this file every CHECKPOINT_INTERVAL generations.
+    public static int CHECKPOINT_INTERVAL = 50; // No. of generations between checkpoints.
+    public static boolean RESUME = false; // Whether to resume from CHECKPOINT_FILE if it exists, rather than starting a new run. Other settings must be unchanged.
+
+    // Decomposition settings, to match cohorts too large for a single gene (e.g. a whole faculty) in close to linear time.
+    public static int DECOMPOSITION_SIZE = 0; // If > 0, larger cohorts are split into sub-cohorts of at most this many Persons, solved in parallel on THREAD_COUNT threads.
+    public static int REFINEMENT_ROUNDS = 5; // Max no. of passes swapping Persons between groups of different sub-cohorts once they are solved.
+
+    // Island model settings, each island is a separate population of POPULATION_SIZE genes evolved on its own thread.
+    public static int ISLAND_COUNT = 1; // No. of islands, island model is only used when > 1.
+    public static int MIGRATION_INTERVAL = 25; // No. of generations between migrations.
+    public static int MIGRATION_COUNT = 2; // No. of fittest genes each island sends per migration.
+    public static IslandModel.Topology MIGRATION_TOPOLOGY = IslandModel.Topology.RING; // Which island receives each island's migrants.
+    public static double[] ISLAND_CROSSOVER_PROBABILITIES = {}; // Crossover chance of each island, islands without a value use CROSSOVER_PROBABILITY.
+    public static double[] ISLAND_MUTATION_PROBABILITIES = {}; // Mutation chance of each island, islands without a value use MUTATION_PROBABILITY.
+
+    // Batch settings, each file is matched as a separate job in the same JVM using the settings above.
+    public static String[] BATCH_FILES = {}; // If set, each excel file is run as its own job instead of FILE_LOCATION.
+    public static int BATCH_CONCURRENCY = 2; // Max no. of jobs run at once, generations of every job are evaluated on a shared pool of THREAD_COUNT threads.
 
     /**
      * Calculates no. of offspring to generate based on POPULATION_SIZE & GENERATION_GAP, ensuring it is a multiple of 2.
@@ -38,113 +128,468 @@ public class Main {
     }
 
     /**
-     * Reads and convert user data from excel into Person objects.
+     * Reads and convert user data from excel into Person objects, or generates them if SYNTHETIC_COHORT_SIZE is set.
+     * No. of Persons is detected from the excel file, and GENE_LENGTH is updated to match.
      * @return Custom user defined gene.
      */
     public static List<Person> createCustomGene() {
 
-        List<Person> custom = new ArrayList<>(GENE_LENGTH);
+        List<Person> custom = new ArrayList<>();
+
+        if (SYNTHETIC_COHORT_SIZE > 0) {
+            CohortGenerator.SyntheticCohort synthetic = new CohortGenerator(SEED).generate(SYNTHETIC_COHORT_SIZE);
+            AGGREGATE = synthetic.aggregate;
+            DISTRIBUTE = synthetic.distribute;
+            GENE_LENGTH = synthetic.persons.size();
+            return synthetic.persons;
+        }
 
         try {
-            FileInputStream file = new FileInputStream(FILE_LOCATION);
-            XSSFWorkbook workbook = new XSSFWorkbook(file);
-            Sheet heteroData = workbook.getSheetAt(1);
-            Sheet homoData = workbook.getSheetAt(2);
+            // Streams the excel file, or loads the cohort cache written by a previous run if the file is unchanged.
+            custom = CohortLoader.load(FILE_LOCATION);
+            GENE_LENGTH = custom.size();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 
-            // i == 1 to ignore headers from excel files
-            for (int i = 1; i < GENE_LENGTH + 1; i++) {
-                Row hetero = heteroData.getRow(i);
-                Row homo = homoData.getRow(i);
+        return custom;
+    }
 
-                double[] heteroChars = convertRowToDoubleArray(hetero, Weight.HETERO_TOTAL_COUNT);
-                double[] homoChars = convertRowToDoubleArray(homo, Weight.HOMO_TOTAL_COUNT);
+    /**
+     * Sets weight profile of the run from WEIGHT_PROFILE if set, must be called before the population is initialised.
+     */
+    public static void loadWeightProfile() {
+        if (!WEIGHT_PROFILE.isEmpty()) {
+            try {
+                Weight.setProfile(WeightProfile.load(Paths.get(WEIGHT_PROFILE), WeightProfile.getDefault()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-                Person person = new Person(new int[]{}, heteroChars, homoChars);
-                custom.add(person);
+    /**
+     * Reads group of each Person Id from WARM_START_FILE, null if it is not set or cannot be read (the run then starts from random genes).
+     */
+    public static Map<Integer, Integer> loadPreviousResult() {
+        if (!WARM_START_FILE.isEmpty()) {
+            try {
+                return Results.readAssignments(Paths.get(WARM_START_FILE));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-            file.close();
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        return null;
+    }
 
-        return custom;
+    /**
+     * Creates initialiser of the initial population from the INITIAL_*_SHARE settings.
+     */
+    public static Initialiser createInitialiser() {
+        return new Initialiser(INITIAL_CONSTRAINED_SHARE, INITIAL_GREEDY_SHARE, INITIAL_BALANCED_SHARE);
+    }
+
+    /**
+     * Reads checkpoint of a run on {@param context} from CHECKPOINT_FILE if RESUME is set and the file exists, otherwise returns null.
+     */
+    public static Checkpoint loadCheckpoint(GeneContext context) {
+        if (!RESUME || CHECKPOINT_FILE.isEmpty()) {
+            return null;
+        }
+        Path file = Paths.get(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return Checkpoint.read(file, context);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Creates sweep of SWEEP_PROFILES based on {@param base}, the profile of the run, null if there are none.
+     */
+    public static WeightSweep createWeightSweep(WeightProfile base) {
+        if (SWEEP_PROFILES.length == 0) {
+            return null;
+        }
+        List<WeightProfile> profiles = new ArrayList<>(SWEEP_PROFILES.length);
+        for (String file : SWEEP_PROFILES) {
+            try {
+                profiles.add(WeightProfile.load(Paths.get(file), base));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return new WeightSweep(base, profiles);
+    }
+
+    /**
+     * Creates sinks for statistics of every generation, based on METRICS_FILE and METRICS_JFR.
+     * No statistics are measured if there are none.
+     */
+    public static List<MetricsSink> createMetricsSinks() {
+        List<MetricsSink> sinks = new ArrayList<>();
+        if (!METRICS_FILE.isEmpty()) {
+            try {
+                sinks.add(FileMetricsSink.forFile(Paths.get(METRICS_FILE)));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (METRICS_JFR) {
+            sinks.add(new JfrMetricsSink());
+        }
+        return sinks;
     }
 
     /**
-     * Converts each row of excel data into double array.
+     * Creates termination policy of a single run (or island) from the termination settings.
      */
-    private static double[] convertRowToDoubleArray(Row row, int columnCount) {
-        double[] data = new double[columnCount];
-        for (int i = 0; i < columnCount; i++) {
-            Cell cell = row.getCell(i);
-            data[i] = cell.getNumericCellValue();
+    public static TerminationPolicy createTerminationPolicy() {
+        return createTerminationPolicy(GENERATION_COUNT);
+    }
+
+    /**
+     * Same as {@link #createTerminationPolicy()}, but ending the run after {@param generations} generations instead of GENERATION_COUNT.
+     */
+    public static TerminationPolicy createTerminationPolicy(int generations) {
+        TerminationPolicy policy = new TerminationPolicy().add(new Budget(Budget.Kind.GENERATIONS, generations));
+        if (TIME_BUDGET_MILLIS > 0) {
+            policy.add(new Budget(Budget.Kind.MILLIS, TIME_BUDGET_MILLIS));
+        }
+        if (EVALUATION_BUDGET > 0) {
+            policy.add(new Budget(Budget.Kind.EVALUATIONS, EVALUATION_BUDGET));
         }
-        return data;
+        if (TARGET_FITNESS > 0) {
+            policy.add(new TargetFitness(TARGET_FITNESS));
+        }
+        if (STAGNATION_GENERATIONS > 0) {
+            policy.add(new Stagnation(STAGNATION_GENERATIONS, STAGNATION_EPSILON)
+                    .withResponse(AdaptiveResponse.raiseMutation(MUTATION_BOOST, 0.5), STAGNATION_RESPONSES));
+        }
+        if (MIN_DIVERSITY > 0) {
+            policy.add(new DiversityCollapse(MIN_DIVERSITY)
+                    .withResponse(AdaptiveResponse.reseed(RESEED_FRACTION), DIVERSITY_RESPONSES));
+        }
+        return policy;
     }
 
     /**
      * Run genetic algo.
      */
     public static void run() {
-        // RNG for various random no. selections
-        Random random = new Random();
+        if (BATCH_FILES.length > 0) {
+            runBatch();
+            return;
+        }
+        if (ISLAND_COUNT > 1) {
+            runIslands();
+            return;
+        }
+
+        // Master RNG, every random no. used by the algorithm is derived from SEED.
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        // Read before creating population, as reading the excel file updates GENE_LENGTH.
+        List<Person> customGene = createCustomGene();
+        loadWeightProfile();
+        if (DECOMPOSITION_SIZE > 0 && GENE_LENGTH > DECOMPOSITION_SIZE) {
+            runDecomposed(customGene);
+            return;
+        }
 
         // Create population, geneLength and size must be > 1 at all times, I won't bother with error checking.
         // Final 2 arrays represent Persons to be grouped together and split up respectively.
-        Population population = Population.initialise(GENE_LENGTH, POPULATION_SIZE, GROUP_NUMBER, createCustomGene(), new int[]{}, new int[]{});
-        population.printPopulation();
-        System.out.println("\n");
-
-        int count = 0;
-        while (count < GENERATION_COUNT) {
-
-            // Stochastic Universal Sampling
-            // No. of selected parents = OFFSPRING_COUNT, Every parent pair produces 2 children.
-            List<Gene> selectedGenes = Stochastic.selectGenesTest(population, OFFSPRING_COUNT);
-            Collections.shuffle(selectedGenes);
-
-            // Used as upper bound when generating random integers to select 2 random points in a gene for Crossover and Mutation Operation
-            int limit = GENE_LENGTH - 1;
-
-            // Crossover Operation
-            for (int i = 0; i < OFFSPRING_COUNT; i += 2) {
-                if (random.nextDouble() <= CROSSOVER_PROBABILITY) {
-                    Pair<Gene, Gene> children = Crossover.pmxCrossover(selectedGenes.get(i), selectedGenes.get(i + 1), random.nextInt(limit), random.nextInt(limit));
-                    selectedGenes.set(i, children.getKey());
-                    selectedGenes.set(i + 1, children.getValue());
+        Map<Integer, Integer> previous = loadPreviousResult();
+        GeneContext context = Gene.setBaseInfo(GENE_LENGTH, GROUP_NUMBER, customGene, AGGREGATE, DISTRIBUTE, HARD_CONSTRAINTS);
+        Checkpoint checkpoint = loadCheckpoint(context);
+        Population population;
+        SplittableRandom populationRandom = random.split(); // Split even when resuming, so the engine seed is always the same.
+
+        // Work chunks of each generation (and the initial population) are run in parallel when more than 1 thread is used.
+        ForkJoinPool executor = THREAD_COUNT > 1 ? new ForkJoinPool(THREAD_COUNT) : null;
+        if (checkpoint != null) {
+            population = checkpoint.createPopulation(context);
+        } else if (previous != null) {
+            population = WarmStart.seed(context, WarmStart.arrange(context, previous), POPULATION_SIZE, WARM_START_SWAPS, populationRandom);
+        } else {
+            population = Population.generate(context, POPULATION_SIZE, createInitialiser(), populationRandom, executor);
+        }
+
+        // Output is written on a background thread, so printing never holds up the next generation.
+        AsyncOutput output = createOutput();
+        if (output.isEnabled(Verbosity.DEBUG)) {
+            StringBuilder initial = new StringBuilder();
+            population.appendTo(initial);
+            output.print(Verbosity.DEBUG, initial.append("\n\n"));
+        }
+
+        GeneticEngine engine = new GeneticEngine(population, GENE_LENGTH, OFFSPRING_COUNT, CROSSOVER_PROBABILITY,
+                MUTATION_PROBABILITY, random.nextLong(), THREAD_COUNT, executor);
+        engine.setDistinctSelection(DISTINCT_SELECTION);
+        engine.setDistinctElites(DISTINCT_ELITES);
+        engine.setLocalSearch(LOCAL_SEARCH_GENES, LOCAL_SEARCH_SWAPS, BEST_IMPROVEMENT);
+        if (checkpoint != null) {
+            engine.restore(checkpoint);
+            output.print(Verbosity.SUMMARY, "Resumed from checkpoint after generation " + checkpoint.getGeneration() + "\n");
+        }
+        List<MetricsSink> sinks = createMetricsSinks();
+        for (MetricsSink sink : sinks) {
+            engine.addMetricsSink(sink);
+        }
+        CheckpointWriter checkpoints = CHECKPOINT_FILE.isEmpty() ? null : new CheckpointWriter(Paths.get(CHECKPOINT_FILE));
+
+        TerminationPolicy policy = createTerminationPolicy(previous != null ? Math.min(GENERATION_COUNT, WARM_START_GENERATIONS) : GENERATION_COUNT);
+        WeightSweep sweep = createWeightSweep(population.getContext().getProfile());
+        if (checkpoint != null) {
+            try {
+                checkpoint.restoreRunState(policy, sweep, context);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to resume from checkpoint " + CHECKPOINT_FILE, e);
+            }
+        }
+
+        try {
+            while (!policy.shouldStop(engine)) {
+                engine.nextGeneration();
+                if (sweep != null) {
+                    sweep.offerFittest(engine.getPopulation(), SWEEP_CANDIDATES);
+                }
+
+                // Printing outputs after each generation
+                output.progress(engine.getGeneration(), engine.getFittestGene().getFitness());
+
+                // State is copied here, and written to disk on the writer thread while the next generations run.
+                if (checkpoints != null && engine.getGeneration() % CHECKPOINT_INTERVAL == 0) {
+                    checkpoints.submit(engine.createCheckpoint().attachRunState(policy, sweep));
                 }
             }
+            output.print(Verbosity.SUMMARY, "Stopped after " + engine.getGeneration() + " generations: " + policy.getReason() + "\n");
+            if (previous != null) {
+                output.print(Verbosity.SUMMARY, WarmStart.countMoved(engine.getFittestGene(), previous) + " Persons changed group since the previous result\n");
+            }
+            if (sweep != null) {
+                sweep.offerAll(engine.getPopulation());
+                printSweep(output, sweep);
+            }
+
+            if (output.isEnabled(Verbosity.DEBUG)) {
+                StringBuilder last = new StringBuilder();
+                population.appendTo(last);
+                output.print(Verbosity.DEBUG, last);
+            }
+            printResult(output, engine.getFittestGene(), new StringBuilder());
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            if (checkpoints != null) {
+                checkpoints.close();
+            }
+            for (MetricsSink sink : sinks) {
+                close(sink);
+            }
+            close(output);
+        }
+    }
+
+    /**
+     * Run genetic algo using the island model, with ISLAND_COUNT populations evolving in parallel.
+     */
+    public static void runIslands() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Person> customGene = createCustomGene();
+        loadWeightProfile();
+
+        // Cohort only needs to be set up once, every island reuses it.
+        GeneContext context = Gene.setBaseInfo(GENE_LENGTH, GROUP_NUMBER, customGene, AGGREGATE, DISTRIBUTE, HARD_CONSTRAINTS);
+        Initialiser initialiser = createInitialiser();
+        List<GeneticEngine> islands = new ArrayList<>(ISLAND_COUNT);
+        for (int i = 0; i < ISLAND_COUNT; i++) {
+            Population population = Population.generate(context, POPULATION_SIZE, initialiser, random.split(), null);
+            double crossover = i < ISLAND_CROSSOVER_PROBABILITIES.length ? ISLAND_CROSSOVER_PROBABILITIES[i] : CROSSOVER_PROBABILITY;
+            double mutation = i < ISLAND_MUTATION_PROBABILITIES.length ? ISLAND_MUTATION_PROBABILITIES[i] : MUTATION_PROBABILITY;
+            GeneticEngine island = new GeneticEngine(population, GENE_LENGTH, OFFSPRING_COUNT, crossover, mutation, random.nextLong(), 1, null);
+            island.setDistinctSelection(DISTINCT_SELECTION);
+            island.setDistinctElites(DISTINCT_ELITES);
+            island.setLocalSearch(LOCAL_SEARCH_GENES, LOCAL_SEARCH_SWAPS, BEST_IMPROVEMENT);
+            islands.add(island);
+        }
 
-            // Mutation 1 and 2
-            for (int i = 0; i < OFFSPRING_COUNT; i++) {
-                // Swap Mutation
-                if (random.nextDouble() <= MUTATION_PROBABILITY) {
-                    selectedGenes.set(i, selectedGenes.get(i).mutateSwap(random.nextInt(limit), random.nextInt(limit)));
+        IslandModel model = new IslandModel(islands, MIGRATION_INTERVAL, MIGRATION_COUNT, MIGRATION_TOPOLOGY, random.nextLong());
+        AsyncOutput output = createOutput();
+        try {
+            Gene fittest = model.run(Main::createTerminationPolicy);
+            WeightSweep sweep = createWeightSweep(fittest.getContext().getProfile());
+            if (sweep != null) {
+                for (GeneticEngine island : islands) {
+                    sweep.offerAll(island.getPopulation());
                 }
-                // Invert Mutation
-                if (random.nextDouble() <= MUTATION_PROBABILITY) {
-                    selectedGenes.set(i, selectedGenes.get(i).mutateInvert(random.nextInt(limit), random.nextInt(limit)));
+                printSweep(output, sweep);
+            }
+
+            StringBuilder summary = new StringBuilder();
+            for (int i = 0; i < ISLAND_COUNT; i++) {
+                GeneticEngine island = islands.get(i);
+                summary.append("Island ").append(i + 1).append(" fitness of best gene: ").append(island.getFittestGene().getFitness())
+                        .append(" (").append(island.getGeneration()).append(" generations)\n");
+            }
+            printResult(output, fittest, summary);
+        } finally {
+            close(output);
+        }
+    }
+
+    /**
+     * Run genetic algo on {@param customGene} split into sub-cohorts of at most DECOMPOSITION_SIZE Persons, up to THREAD_COUNT at once.
+     */
+    public static void runDecomposed(List<Person> customGene) {
+        MatchingJob job = createJob("cohort", customGene, SEED);
+        job.setWorkers(1); // Sub-cohorts run in parallel instead.
+        AsyncOutput output = createOutput();
+        try {
+            Decomposition decomposition = new Decomposition(job, DECOMPOSITION_SIZE, REFINEMENT_ROUNDS, new BatchRunner(THREAD_COUNT, null));
+            JobResult result = decomposition.solve();
+            if (!result.isSuccessful()) {
+                throw new IllegalStateException("Failed to solve sub-cohorts", result.getError());
+            }
+            printResult(output, result.getFittest(), new StringBuilder(result.toString()));
+        } finally {
+            close(output);
+        }
+    }
+
+    /**
+     * Run genetic algo on every file in BATCH_FILES as a separate job, up to BATCH_CONCURRENCY jobs at once.
+     * Each job is seeded from SEED in order of BATCH_FILES, so results are reproducible regardless of which jobs run together.
+     */
+    public static void runBatch() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        loadWeightProfile();
+        List<MatchingJob> jobs = new ArrayList<>(BATCH_FILES.length);
+        for (String file : BATCH_FILES) {
+            try {
+                List<Person> persons = CohortLoader.load(file);
+                jobs.add(createJob(Paths.get(file).getFileName().toString(), persons, random.nextLong()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        ForkJoinPool executor = THREAD_COUNT > 1 ? new ForkJoinPool(THREAD_COUNT) : null;
+        AsyncOutput output = createOutput();
+        try {
+            for (JobResult result : new BatchRunner(BATCH_CONCURRENCY, executor).run(jobs)) {
+                output.print(Verbosity.SUMMARY, result + "\n");
+                if (result.isSuccessful()) {
+                    output.print(Verbosity.QUIET, Results.toJson(result.getJob().getName(), result.getFittest()) + "\n");
+                } else {
+                    result.getError().printStackTrace();
                 }
             }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            close(output);
+        }
+    }
 
-            // Elitism (Create new generation using children + fittest parents)
-            ArrayList<Gene> childrenPopulation = population.getFittestGenes(POPULATION_SIZE - OFFSPRING_COUNT);
-            childrenPopulation.addAll(selectedGenes);
-            population.updateGenes(childrenPopulation);
+    /**
+     * Creates job named {@param name} matching {@param persons} with the settings above, seeded by {@param seed}.
+     */
+    public static MatchingJob createJob(String name, List<Person> persons, long seed) {
+        MatchingJob job = new MatchingJob(name, persons, GROUP_NUMBER, AGGREGATE, DISTRIBUTE);
+        job.setProfile(Weight.getProfile());
+        job.setHardConstraints(HARD_CONSTRAINTS);
+        job.setPopulationSize(POPULATION_SIZE);
+        job.setInitialiser(createInitialiser());
+        job.setGenerationGap(GENERATION_GAP);
+        job.setCrossoverProbability(CROSSOVER_PROBABILITY);
+        job.setMutationProbability(MUTATION_PROBABILITY);
+        job.setSeed(seed);
+        job.setWorkers(THREAD_COUNT);
+        job.setDistinctSelection(DISTINCT_SELECTION);
+        job.setDistinctElites(DISTINCT_ELITES);
+        job.setLocalSearch(LOCAL_SEARCH_GENES, LOCAL_SEARCH_SWAPS, BEST_IMPROVEMENT);
+        job.setTermination(Main::createTerminationPolicy);
+        return job;
+    }
 
-            count++;
+    /**
+     * Creates output for the run, writing to OUTPUT_FILE if set and otherwise stdout.
+     */
+    public static AsyncOutput createOutput() {
+        if (!OUTPUT_FILE.isEmpty()) {
+            try {
+                return AsyncOutput.toFile(Paths.get(OUTPUT_FILE), VERBOSITY);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return AsyncOutput.toStdout(VERBOSITY);
+    }
 
-            // Printing outputs after each generation
-            Gene populationBest = population.getFittestGenes(1).get(0);
-            System.out.println("Generation: " + count);
-            System.out.println("Fitness of best gene: " + populationBest.getFitness());
+    /**
+     * Posts the final result of the run to {@param output}, after {@param summary} (SUMMARY level), and writes it to RESULT_FILE if set.
+     */
+    private static void printResult(AsyncOutput output, Gene fittest, StringBuilder summary) {
+        if (output.isEnabled(Verbosity.SUMMARY)) {
+            summary.append("\n\nFinal population fittest gene: ");
+            fittest.appendTo(summary);
+            summary.append('\n');
+            fittest.appendGroups(summary);
+            GeneContext context = fittest.getContext();
+            if (context.getRepair() != null) {
+                summary.append("Persons placed against hard constraints: ").append(fittest.countViolations()).append('\n');
+            }
+            appendCacheStats(summary, "Fitness cache", context.getFitnessCache());
+            appendCacheStats(summary, "Group cache", context.getGroupCache());
+            output.print(Verbosity.SUMMARY, summary);
         }
 
-        population.printPopulation();
-        
-        Gene fittest = population.getFittestGenes(1).get(0);
-        System.out.println("\n\nFinal population fittest gene: " + fittest.toString());
-        fittest.printAsGroup();
+        output.print(Verbosity.QUIET, Results.toJson(fittest) + "\n");
+        if (!RESULT_FILE.isEmpty()) {
+            try {
+                Results.write(fittest, Paths.get(RESULT_FILE));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Posts fittest gene found under each profile of {@param sweep} to {@param output} (SUMMARY level).
+     */
+    private static void printSweep(AsyncOutput output, WeightSweep sweep) {
+        if (output.isEnabled(Verbosity.SUMMARY)) {
+            StringBuilder summary = new StringBuilder();
+            for (int i = 0; i < sweep.getProfiles().size(); i++) {
+                summary.append("\nProfile ").append(sweep.getProfiles().get(i)).append(" fitness of best gene: ").append(sweep.getBestFitness(i))
+                        .append(", under profile of the run:\n");
+                sweep.getBest(i).appendGroups(summary);
+            }
+            output.print(Verbosity.SUMMARY, summary);
+        }
+    }
+
+    /**
+     * Appends hit rate of {@param cache} to {@param out}, useful when tuning cache capacities in ScoreCache.
+     */
+    private static void appendCacheStats(StringBuilder out, String name, ScoreCache cache) {
+        if (cache != null) {
+            out.append(String.format("%s: %d hits, %d misses (%.1f%% hit rate)%n", name, cache.getHits(), cache.getMisses(), cache.getHitRate() * 100));
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     public static void main(String[] args) {
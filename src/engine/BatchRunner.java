@@ -0,0 +1,112 @@
+package engine;
+
+import geneticsteps.GeneContext;
+import geneticsteps.Population;
+import metrics.MetricsSink;
+import termination.TerminationPolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many MatchingJobs in a single JVM, so that jobs share its startup, class loading and JIT warm-up.
+ * Each job has its own GeneContext, so jobs never share cohort state. At most maxConcurrentJobs jobs run at once, each on its own
+ * orchestration thread, while the work chunks of every job's generations are evaluated on a single shared executor.
+ * The orchestration threads mostly wait for their chunks, so CPU use is bounded by the shared executor rather than the no. of jobs.
+ * A job that fails does not affect the others, its error is reported in its JobResult instead.
+ */
+public class BatchRunner {
+
+    private final int maxConcurrentJobs;
+    private final ExecutorService evaluationExecutor; // Shared by every job, null to evaluate on the orchestration threads.
+
+    /**
+     * Creates a runner of up to {@param maxConcurrentJobs} jobs at once.
+     * @param evaluationExecutor Executor to evaluate work chunks of every job on, or null to evaluate each job on its own thread.
+     */
+    public BatchRunner(int maxConcurrentJobs, ExecutorService evaluationExecutor) {
+        this.maxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+        this.evaluationExecutor = evaluationExecutor;
+    }
+
+    /**
+     * Runs every job in {@param jobs} and waits for all of them to end.
+     * @return Result of each job, in the same order as {@param jobs}.
+     */
+    public List<JobResult> run(List<MatchingJob> jobs) {
+        if (jobs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ExecutorService orchestrator = Executors.newFixedThreadPool(Math.min(maxConcurrentJobs, jobs.size()));
+        try {
+            List<Callable<JobResult>> tasks = new ArrayList<>(jobs.size());
+            for (MatchingJob job : jobs) {
+                tasks.add(() -> runJob(job));
+            }
+            List<JobResult> results = new ArrayList<>(jobs.size());
+            for (Future<JobResult> result : orchestrator.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for jobs", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to run jobs", e.getCause());
+        } finally {
+            orchestrator.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs {@param job} on the calling thread until its termination policy ends it.
+     * A job run with the same seed and workers always produces the same result, whether or not other jobs run alongside it.
+     */
+    public JobResult runJob(MatchingJob job) {
+        long start = System.nanoTime();
+        GeneticEngine engine = null;
+        try {
+            // Same derivation of RNG streams as Main, so a job reproduces a single run with the same settings and seed.
+            SplittableRandom random = new SplittableRandom(job.getSeed());
+            int geneLength = job.getPersons().size();
+            GeneContext context = new GeneContext(geneLength, job.getGroupCount(), job.getPersons(), job.getAggregate(),
+                    job.getDistribute(), job.getProfile(), job.isHardConstraints());
+            ExecutorService executor = job.getWorkers() > 1 ? evaluationExecutor : null;
+            Population population = Population.generate(context, job.getPopulationSize(), job.getInitialiser(), random.split(), executor);
+
+            engine = new GeneticEngine(population, geneLength, job.getOffspringCount(), job.getCrossoverProbability(),
+                    job.getMutationProbability(), random.nextLong(), job.getWorkers(), executor);
+            engine.setDistinctSelection(job.isDistinctSelection());
+            engine.setDistinctElites(job.isDistinctElites());
+            engine.setLocalSearch(job.getLocalSearchGenes(), job.getLocalSearchSwaps(), job.isBestImprovement());
+            for (MetricsSink sink : job.getMetricsSinks()) {
+                engine.addMetricsSink(sink);
+            }
+
+            TerminationPolicy policy = job.createTerminationPolicy();
+            while (!policy.shouldStop(engine)) {
+                engine.nextGeneration();
+            }
+            return new JobResult(job, engine.getFittestGene().copy(), engine.getGeneration(), engine.getEvaluationCount(),
+                    engine.getSwapEvaluationCount(), policy.getReason(), System.nanoTime() - start, null);
+        } catch (RuntimeException e) {
+            return new JobResult(job, null, engine == null ? 0 : engine.getGeneration(), engine == null ? 0 : engine.getEvaluationCount(),
+                    engine == null ? 0 : engine.getSwapEvaluationCount(), null, System.nanoTime() - start, e);
+        } finally {
+            for (MetricsSink sink : job.getMetricsSinks()) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package engine;
+
+import geneticsteps.Gene;
+import geneticsteps.GeneContext;
+import geneticsteps.Population;
+import geneticsteps.ScoreCache;
+import termination.TerminationPolicy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the state of a GeneticEngine between generations: its population, RNG state, counters and score caches,
+ * along with the state of the termination policy and weight sweep of the run once attached with {@link #attachRunState}.
+ * A run restored from a checkpoint continues exactly as the original run would have, given the same settings and no. of workers.
+ * Every part of a checkpoint is a copy, so it can be written on another thread while the engine continues.
+ * Checkpoints are written in a compact binary format, to a temporary file that then replaces the previous checkpoint,
+ * so a crash while writing never leaves a corrupt or partial checkpoint behind.
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x47414350; // "GACP"
+    private static final int VERSION = 3;
+
+    final long fingerprint; // See GeneContext#calcFingerprint(), used to check a checkpoint belongs to the same job.
+    final long seed;
+    final long streamCount;
+    final int workers;
+    final int generation;
+    final long evaluations;
+    final long swapEvaluations;
+    final double crossoverProbability;
+    final double mutationProbability;
+    private final Gene[] genes;
+    private final int[] aliases; // Index of an earlier gene that is the same object as each gene, -1 if none.
+    final long[] localOptima; // Null if local search has not run yet.
+    final ScoreCache fitnessCache; // Null if disabled.
+    final ScoreCache groupCache; // Null if disabled.
+    private byte[] policyState; // Serialised TerminationPolicy of the run, null if not attached.
+    private byte[] sweepState; // Serialised WeightSweep of the run, null if not attached or the run has none.
+
+    Checkpoint(long fingerprint, long seed, long streamCount, int workers, int generation, long evaluations, long swapEvaluations,
+               double crossoverProbability, double mutationProbability, Gene[] genes, int[] aliases, long[] localOptima, ScoreCache fitnessCache, ScoreCache groupCache) {
+        this.fingerprint = fingerprint;
+        this.seed = seed;
+        this.streamCount = streamCount;
+        this.workers = workers;
+        this.generation = generation;
+        this.evaluations = evaluations;
+        this.swapEvaluations = swapEvaluations;
+        this.crossoverProbability = crossoverProbability;
+        this.mutationProbability = mutationProbability;
+        this.genes = genes;
+        this.aliases = aliases;
+        this.localOptima = localOptima;
+        this.fitnessCache = fitnessCache;
+        this.groupCache = groupCache;
+    }
+
+    /**
+     * Copies genes of {@param population}, keeping track of genes referenced more than once, as the engine treats them differently.
+     * @return Copies of genes, followed by index of an earlier copy of the same object for each gene (or -1) in {@param aliases}.
+     */
+    static Gene[] copyGenes(Population population, int[] aliases) {
+        List<Gene> source = population.getGenes();
+        Gene[] copies = new Gene[source.size()];
+        Map<Gene, Integer> first = new IdentityHashMap<>();
+        for (int i = 0; i < copies.length; i++) {
+            Integer earlier = first.putIfAbsent(source.get(i), i);
+            aliases[i] = earlier == null ? -1 : earlier;
+            copies[i] = earlier == null ? source.get(i).copy() : copies[earlier];
+        }
+        return copies;
+    }
+
+    /**
+     * Returns no. of generations the checkpointed engine had created.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Creates a population of the checkpointed genes, which must belong to the context the checkpoint was read with.
+     */
+    public Population createPopulation(GeneContext context) {
+        List<Gene> restored = new ArrayList<>(genes.length);
+        for (int i = 0; i < genes.length; i++) {
+            restored.add(aliases[i] < 0 ? genes[i].copy() : restored.get(aliases[i]));
+        }
+        return Population.of(context, restored);
+    }
+
+    /**
+     * Attaches state of {@param policy} and {@param sweep} (null if the run has none), which the engine does not know about.
+     * Both are serialised right away, so the run can carry on while the checkpoint is written.
+     * @return This checkpoint.
+     */
+    public Checkpoint attachRunState(TerminationPolicy policy, WeightSweep sweep) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            policy.write(new DataOutputStream(bytes));
+            policyState = bytes.toByteArray();
+            if (sweep != null) {
+                bytes.reset();
+                sweep.write(new DataOutputStream(bytes));
+                sweepState = bytes.toByteArray();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by in-memory streams.
+        }
+        return this;
+    }
+
+    /**
+     * Restores state attached with {@link #attachRunState} to {@param policy} and {@param sweep} (null if the run has none),
+     * which must be set up with the same settings as those of the checkpointed run. Genes of the sweep belong to {@param context}.
+     * @throws IOException If no state was attached, or it does not match the termination rules or sweep profiles given.
+     */
+    public void restoreRunState(TerminationPolicy policy, WeightSweep sweep, GeneContext context) throws IOException {
+        if (policyState == null) {
+            throw new IOException("Checkpoint holds no termination state, the run cannot be resumed exactly");
+        }
+        if ((sweep == null) != (sweepState == null)) {
+            throw new IOException("Checkpoint was written by a run " + (sweep == null ? "with" : "without") + " sweep profiles");
+        }
+        policy.read(new DataInputStream(new ByteArrayInputStream(policyState)));
+        if (sweep != null) {
+            sweep.read(new DataInputStream(new ByteArrayInputStream(sweepState)), context);
+        }
+    }
+
+    /**
+     * Writes checkpoint to {@param file}, replacing it only once the checkpoint has been completely written and flushed to disk.
+     */
+    public void write(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                write(out);
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fingerprint);
+        out.writeInt(genes.length);
+        out.writeLong(seed);
+        out.writeLong(streamCount);
+        out.writeInt(workers);
+        out.writeInt(generation);
+        out.writeLong(evaluations);
+        out.writeLong(swapEvaluations);
+        out.writeDouble(crossoverProbability);
+        out.writeDouble(mutationProbability);
+        for (int i = 0; i < genes.length; i++) {
+            out.writeInt(aliases[i]);
+            if (aliases[i] < 0) {
+                genes[i].write(out);
+            }
+        }
+        out.writeInt(localOptima == null ? -1 : localOptima.length);
+        if (localOptima != null) {
+            for (long hash : localOptima) {
+                out.writeLong(hash);
+            }
+        }
+        writeCache(out, fitnessCache);
+        writeCache(out, groupCache);
+        writeBytes(out, policyState);
+        writeBytes(out, sweepState);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeCache(DataOutputStream out, ScoreCache cache) throws IOException {
+        out.writeBoolean(cache != null);
+        if (cache != null) {
+            cache.write(out);
+        }
+    }
+
+    /**
+     * Reads checkpoint of a run on {@param context} from {@param file}.
+     * @throws IOException If the file is not a checkpoint, or was written by a run on a different cohort, group layout, weights or constraints.
+     */
+    public static Checkpoint read(Path file, GeneContext context) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a checkpoint of this version");
+            }
+            long fingerprint = in.readLong();
+            if (fingerprint != context.calcFingerprint()) {
+                throw new IOException(file + " is a checkpoint of a different cohort, group layout, weights or constraints");
+            }
+            int size = in.readInt();
+            long seed = in.readLong();
+            long streamCount = in.readLong();
+            int workers = in.readInt();
+            int generation = in.readInt();
+            long evaluations = in.readLong();
+            long swapEvaluations = in.readLong();
+            double crossoverProbability = in.readDouble();
+            double mutationProbability = in.readDouble();
+            Gene[] genes = new Gene[size];
+            int[] aliases = new int[size];
+            for (int i = 0; i < size; i++) {
+                aliases[i] = in.readInt();
+                if (aliases[i] >= i) {
+                    throw new IOException("Invalid gene reference " + aliases[i] + " in " + file);
+                }
+                genes[i] = aliases[i] < 0 ? Gene.read(context, in) : genes[aliases[i]];
+            }
+            int optima = in.readInt();
+            long[] localOptima = optima < 0 ? null : new long[optima];
+            for (int i = 0; i < optima; i++) {
+                localOptima[i] = in.readLong();
+            }
+            ScoreCache fitnessCache = in.readBoolean() ? ScoreCache.read(in) : null;
+            ScoreCache groupCache = in.readBoolean() ? ScoreCache.read(in) : null;
+            Checkpoint checkpoint = new Checkpoint(fingerprint, seed, streamCount, workers, generation, evaluations, swapEvaluations,
+                    crossoverProbability, mutationProbability, genes, aliases, localOptima, fitnessCache, groupCache);
+            checkpoint.policyState = readBytes(in);
+            checkpoint.sweepState = readBytes(in);
+            return checkpoint;
+        }
+    }
+}
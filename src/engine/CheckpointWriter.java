@@ -0,0 +1,95 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes checkpoints to a file on a background thread, so the genetic algorithm does not wait for disk I/O.
+ * Only the latest checkpoint matters, so a checkpoint submitted while the previous one is still waiting to be written replaces it.
+ */
+public class CheckpointWriter implements Closeable {
+
+    private final Path file;
+    private final Thread thread;
+    private Checkpoint pending; // Latest checkpoint not yet written, null if none.
+    private int written = 0; // No. of checkpoints written so far.
+    private boolean closed = false;
+
+    /**
+     * Creates a writer of checkpoints to {@param file}, which each checkpoint replaces.
+     */
+    public CheckpointWriter(Path file) {
+        this.file = file;
+        this.thread = new Thread(this::drain, "checkpoint-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Posts {@param checkpoint} to be written, replacing any checkpoint that has not been written yet. Never blocks.
+     */
+    public synchronized void submit(Checkpoint checkpoint) {
+        if (closed) {
+            return;
+        }
+        pending = checkpoint;
+        notifyAll();
+    }
+
+    /**
+     * Returns no. of checkpoints written so far.
+     */
+    public synchronized int getWritten() {
+        return written;
+    }
+
+    /**
+     * Loop of the writer thread, writes the latest checkpoint posted until the writer is closed and nothing is pending.
+     */
+    private void drain() {
+        while (true) {
+            Checkpoint checkpoint;
+            synchronized (this) {
+                while (pending == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (pending == null) {
+                    break;
+                }
+                checkpoint = pending;
+                pending = null;
+            }
+
+            try {
+                checkpoint.write(file);
+                synchronized (this) {
+                    written++;
+                }
+            } catch (IOException e) {
+                // The run can continue without checkpoints, the next one may still succeed.
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoint still pending, if any, then stops the writer thread. Checkpoints submitted afterwards are discarded.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
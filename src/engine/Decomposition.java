@@ -0,0 +1,267 @@
+package engine;
+
+import geneticsteps.Gene;
+import geneticsteps.GeneContext;
+import model.Person;
+import model.Weight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Solves a MatchingJob too large for a single permutation by splitting it into sub-cohorts, which are solved in parallel.
+ * Fitness evaluation and crossover of a gene both grow with its length, so many short genes converge far faster than one long gene.
+ * A job is solved in 3 steps:
+ * 1. Its cohort is split into sub-cohorts of whole groups. Aggregated Persons are kept together in as few sub-cohorts as possible,
+ *    as no sub-cohort could group them with those of another. The rest are stratified on distributed Persons and characteristics,
+ *    so every sub-cohort has about the same characteristic means as the whole cohort and fBal stays meaningful within each.
+ * 2. Every sub-cohort is solved as its own job by a BatchRunner, one job per thread.
+ * 3. Groups of the combined result are refined by swapping Persons between groups of different sub-cohorts,
+ *    recovering preferences and balance that the split left across sub-cohorts.
+ */
+public class Decomposition {
+
+    private final MatchingJob job;
+    private final int subCohortSize; // Max no. of Persons in each sub-cohort.
+    private final int refinementRounds; // Max no. of passes over every group during refinement.
+    private final BatchRunner runner;
+
+    /**
+     * Creates a decomposition of {@param job} into sub-cohorts of at most {@param subCohortSize} Persons, solved by {@param runner}.
+     * @param refinementRounds Max no. of refinement passes, in each of which every group is refined with a random group of another sub-cohort.
+     */
+    public Decomposition(MatchingJob job, int subCohortSize, int refinementRounds, BatchRunner runner) {
+        this.job = job;
+        this.subCohortSize = Math.max(1, subCohortSize);
+        this.refinementRounds = refinementRounds;
+        this.runner = runner;
+    }
+
+    /**
+     * Returns no. of sub-cohorts the job is split into, at most 1 per group.
+     */
+    public int getSubCohortCount() {
+        int persons = job.getPersons().size();
+        return Math.min(job.getGroupCount(), (persons + subCohortSize - 1) / subCohortSize);
+    }
+
+    /**
+     * Returns first group of the job held by each sub-cohort, followed by the no. of groups of the job.
+     * Sub-cohorts hold consecutive groups, so the group layout of each sub-cohort matches its part of the layout of the job.
+     */
+    private int[] getGroupRanges() {
+        int subCohorts = getSubCohortCount();
+        int[] from = new int[subCohorts + 1];
+        for (int i = 0; i <= subCohorts; i++) {
+            from[i] = (int) ((long) i * job.getGroupCount() / subCohorts);
+        }
+        return from;
+    }
+
+    /**
+     * Splits the job into a job of each sub-cohort, each seeded from the seed of the job.
+     * Aggregated Persons first fill the sub-cohort with the most room, then the next if they do not fit, so they can still be grouped together.
+     * The other Persons are sorted by whether they are distributed, then by their characteristics, and dealt in that order to the
+     * sub-cohort furthest behind its share of the Persons dealt so far. Each sub-cohort therefore gets a proportional share of every stratum.
+     * @param context Context of the whole job, which sets the size of each group.
+     */
+    public List<MatchingJob> split(GeneContext context) {
+        List<Person> persons = job.getPersons();
+        int[] ranges = getGroupRanges();
+        int subCohorts = ranges.length - 1;
+        int[] sizes = new int[subCohorts];
+        for (int i = 0; i < subCohorts; i++) {
+            for (int group = ranges[i]; group < ranges[i + 1]; group++) {
+                sizes[i] += context.getGroupSize(group);
+            }
+        }
+
+        Set<Integer> aggregated = toSet(job.getAggregate());
+        Set<Integer> distributed = toSet(job.getDistribute());
+        int[] subCohortOf = new int[persons.size()];
+        int[] counts = new int[subCohorts];
+        List<Integer> others = new ArrayList<>(persons.size());
+        int target = -1; // Sub-cohort aggregated Persons are placed in.
+        for (int i = 0; i < persons.size(); i++) {
+            if (!aggregated.contains(persons.get(i).getId())) {
+                others.add(i);
+                continue;
+            }
+            if (target < 0 || counts[target] == sizes[target]) {
+                target = findRoomiest(sizes, counts);
+            }
+            subCohortOf[i] = target;
+            counts[target]++;
+        }
+
+        Integer[] order = others.toArray(new Integer[0]);
+        Comparator<Integer> byStratum = Comparator.comparingInt(i -> distributed.contains(persons.get(i).getId()) ? 1 : 0);
+        Arrays.sort(order, byStratum.thenComparing((i, j) -> compareCharacteristics(persons.get(i), persons.get(j))));
+
+        // Shares are of the room left in each sub-cohort, so those holding aggregated Persons get fewer of the rest.
+        int[] room = new int[subCohorts];
+        for (int i = 0; i < subCohorts; i++) {
+            room[i] = sizes[i] - counts[i];
+        }
+        int[] dealtTo = new int[subCohorts];
+        for (int dealt = 0; dealt < order.length; dealt++) {
+            int best = -1;
+            double bestDeficit = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < subCohorts; i++) {
+                double deficit = (double) room[i] * (dealt + 1) / order.length - dealtTo[i];
+                if (dealtTo[i] < room[i] && deficit > bestDeficit) {
+                    best = i;
+                    bestDeficit = deficit;
+                }
+            }
+            subCohortOf[order[dealt]] = best;
+            dealtTo[best]++;
+        }
+
+        List<List<Person>> members = new ArrayList<>(subCohorts);
+        for (int i = 0; i < subCohorts; i++) {
+            members.add(new ArrayList<>(sizes[i]));
+        }
+        for (int i = 0; i < persons.size(); i++) {
+            members.get(subCohortOf[i]).add(persons.get(i));
+        }
+
+        SplittableRandom random = new SplittableRandom(job.getSeed());
+        List<MatchingJob> jobs = new ArrayList<>(subCohorts);
+        for (int i = 0; i < subCohorts; i++) {
+            MatchingJob subJob = job.derive(job.getName() + "#" + (i + 1), members.get(i), ranges[i + 1] - ranges[i]);
+            subJob.setSeed(random.nextLong());
+            jobs.add(subJob);
+        }
+        return jobs;
+    }
+
+    /**
+     * Returns sub-cohort with the most room left, given the {@param sizes} of sub-cohorts and {@param counts} of Persons already in each.
+     */
+    private static int findRoomiest(int[] sizes, int[] counts) {
+        int best = 0;
+        for (int i = 1; i < sizes.length; i++) {
+            if (sizes[i] - counts[i] > sizes[best] - counts[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static Set<Integer> toSet(int[] ids) {
+        Set<Integer> set = new HashSet<>(ids.length * 2);
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * Compares heterogeneous, then homogeneous characteristics of {@param first} and {@param second}, in order.
+     */
+    private static int compareCharacteristics(Person first, Person second) {
+        for (int i = 0; i < Weight.HETERO_TOTAL_COUNT; i++) {
+            int result = Double.compare(first.getHeterogeneous()[i], second.getHeterogeneous()[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        for (int i = 0; i < Weight.HOMO_TOTAL_COUNT; i++) {
+            int result = Double.compare(first.getHomogeneous()[i], second.getHomogeneous()[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Solves the job, see class description. Sub-cohorts are solved in parallel by the runner, refinement runs on the calling thread.
+     * A job that fits in a single sub-cohort is solved as it is. Results are reproducible for the same seed and settings.
+     * @return Result of the job, whose fittest gene covers the whole cohort. Generations are those of the slowest sub-cohort,
+     * evaluations include every sub-cohort, and swap evaluations also include refinement.
+     */
+    public JobResult solve() {
+        if (getSubCohortCount() <= 1) {
+            return runner.runJob(job);
+        }
+        long start = System.nanoTime();
+        GeneContext context = new GeneContext(job.getPersons().size(), job.getGroupCount(), job.getPersons(), job.getAggregate(),
+                job.getDistribute(), job.getProfile(), job.isHardConstraints());
+        int[] ranges = getGroupRanges();
+        List<MatchingJob> jobs = split(context);
+        List<JobResult> results = runner.run(jobs);
+
+        int generations = 0;
+        long evaluations = 0;
+        long swapEvaluations = 0;
+        for (JobResult result : results) {
+            generations = Math.max(generations, result.getGenerations());
+            evaluations += result.getEvaluations();
+            swapEvaluations += result.getSwapEvaluations();
+            if (!result.isSuccessful()) {
+                return new JobResult(job, null, generations, evaluations, swapEvaluations, null, System.nanoTime() - start, result.getError());
+            }
+        }
+
+        // Combine groups of every sub-cohort, in order, into a gene of the whole cohort.
+        Map<Integer, Integer> indexOf = new HashMap<>(job.getPersons().size() * 2);
+        for (int i = 0; i < job.getPersons().size(); i++) {
+            indexOf.put(job.getPersons().get(i).getId(), i);
+        }
+        int[] combined = new int[job.getPersons().size()];
+        int position = 0;
+        for (JobResult result : results) {
+            for (int[] group : result.getFittest().getGroupIds()) {
+                for (int id : group) {
+                    combined[position++] = indexOf.get(id);
+                }
+            }
+        }
+        Gene gene = new Gene(context, combined);
+
+        int rounds = 0;
+        SplittableRandom random = new SplittableRandom(job.getSeed()).split();
+        while (rounds < refinementRounds) {
+            rounds++;
+            double before = gene.getFitness();
+            swapEvaluations += refine(gene, ranges, random);
+            if (gene.getFitness() <= before) {
+                break;
+            }
+        }
+        return new JobResult(job, gene, generations, evaluations, swapEvaluations, "Solved as " + jobs.size() + " sub-cohorts ("
+                + results.get(0).getStopReason() + "), refined in " + rounds + " rounds", System.nanoTime() - start, null);
+    }
+
+    /**
+     * Refines every group of {@param gene} with a random group of another sub-cohort, see {@link Gene#climbBetween}.
+     * @param ranges First group of each sub-cohort, followed by the no. of groups.
+     * @return No. of swaps evaluated.
+     */
+    private static long refine(Gene gene, int[] ranges, SplittableRandom random) {
+        int groups = ranges[ranges.length - 1];
+        long evaluated = 0;
+        int subCohort = 0;
+        for (int group = 0; group < groups; group++) {
+            while (group >= ranges[subCohort + 1]) {
+                subCohort++;
+            }
+            int own = ranges[subCohort + 1] - ranges[subCohort];
+            int other = random.nextInt(groups - own);
+            if (other >= ranges[subCohort]) {
+                other += own;
+            }
+            evaluated += gene.climbBetween(group, other, Integer.MAX_VALUE);
+        }
+        return evaluated;
+    }
+}
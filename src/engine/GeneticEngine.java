@@ -0,0 +1,561 @@
+package engine;
+
+import geneticsteps.Crossover;
+import geneticsteps.Gene;
+import geneticsteps.GeneContext;
+import geneticsteps.GenePool;
+import geneticsteps.Population;
+import geneticsteps.ScoreCache;
+import geneticsteps.Stochastic;
+import metrics.Allocations;
+import metrics.GenerationStats;
+import metrics.MetricsSink;
+import metrics.Phase;
+import utils.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the genetic algorithm on a Population one generation at a time.
+ * Crossover and Mutation of each generation are split into a fixed no. of work chunks, each with its own RNG stream derived from a master seed.
+ * RNG streams are split off anew every generation, so the state of an engine can be checkpointed and restored between generations.
+ * Chunks are run on an executor when one is provided, otherwise sequentially on the calling thread.
+ * Runs with the same seed and no. of workers always produce the same results, regardless of how chunks are scheduled.
+ * Fittest genes of each generation can optionally be improved by hill climbing (a memetic algorithm), one chunk per gene.
+ * Statistics of every generation are passed to any MetricsSinks added, nothing is measured when there are none.
+ */
+public class GeneticEngine {
+
+    private final Population population;
+    private final GenePool pool;
+    private final int geneLength;
+    private final int populationSize;
+    private final int offspringCount; // No. of offspring, must be multiple of 2.
+    private double crossoverProbability;
+    private double mutationProbability;
+    private boolean distinctSelection = false; // Whether SUS selects each grouping at most once.
+    private boolean distinctElites = false; // Whether elitism keeps each grouping at most once.
+    private int localSearchGenes = 0; // No. of fittest genes improved by local search each generation, 0 to disable.
+    private int localSearchSwaps; // Max no. of swaps applied to each gene by local search.
+    private boolean bestImprovement; // Whether local search applies the best swap of each pass rather than the first improving swap.
+    private LongHashSet localOptima; // Hashes of genes local search could not improve, which are not searched again.
+
+    private long seed; // Master seed, every RNG stream of the engine is split from it.
+    private SplittableRandom streams; // Splits off the RNG of each generation (and of each reseed).
+    private long streamCount = 0; // No. of RNGs split from streams so far, which together with seed makes up the RNG state.
+    private SplittableRandom random; // RNG of current generation, used for selection.
+    private final SplittableRandom[] workerRandoms; // RNG stream of each work chunk in the current generation.
+    private final ExecutorService executor; // Null if chunks are run sequentially.
+    private int generation = 0;
+    private long evaluations = 0; // No. of candidate genes evaluated by this engine.
+    private long swapEvaluations = 0; // No. of swaps scored by local search, not counted as genes as each takes constant time.
+    private final int[] chunkEvaluations; // No. of candidate genes evaluated by each work chunk in the last generation.
+    private LongHashSet distinctHashes; // Used to measure diversity, created when first needed.
+
+    // Instrumentation, only set up once the first MetricsSink is added.
+    private MetricsSink[] sinks = new MetricsSink[0];
+    private GenerationStats stats;
+    private GenerationStats[] chunkStats; // Statistics of each work chunk, combined into stats after each generation.
+
+    /**
+     * Creates an engine for {@param population}.
+     * @param seed Master seed, from which the RNG stream of every work chunk is derived.
+     * @param workers No. of work chunks each generation is split into. Results depend on this value, but not on the executor.
+     * @param executor Executor to run work chunks on, or null to run them on the calling thread.
+     */
+    public GeneticEngine(Population population, int geneLength, int offspringCount, double crossoverProbability,
+                         double mutationProbability, long seed, int workers, ExecutorService executor) {
+        this.population = population;
+        this.pool = population.getGenePool();
+        this.geneLength = geneLength;
+        this.populationSize = population.getGenes().size();
+        this.offspringCount = offspringCount;
+        this.crossoverProbability = crossoverProbability;
+        this.mutationProbability = mutationProbability;
+        this.seed = seed;
+        this.streams = new SplittableRandom(seed);
+        this.workerRandoms = new SplittableRandom[Math.max(1, workers)];
+        this.chunkEvaluations = new int[workerRandoms.length];
+        this.executor = executor;
+    }
+
+    /**
+     * Replaces the population with the next generation.
+     */
+    public void nextGeneration() {
+        boolean instrumented = stats != null;
+        long start = instrumented ? System.nanoTime() : 0;
+        long allocated = instrumented ? Allocations.currentThread() : 0;
+        if (instrumented) {
+            stats.reset(generation + 1);
+        }
+
+        // Every generation has its own RNG streams, so the RNG state between generations is only the no. of streams split so far.
+        random = nextStream();
+        for (int i = 0; i < workerRandoms.length; i++) {
+            workerRandoms[i] = random.split();
+        }
+
+        // Stochastic Universal Sampling
+        // No. of selected parents = offspringCount, Every parent pair produces 2 children.
+        List<Gene> selectedGenes = distinctSelection
+                ? Stochastic.selectDistinctGenes(population, offspringCount, random)
+                : Stochastic.selectGenesTest(population, offspringCount, random);
+        Gene[] offspring = selectedGenes.toArray(new Gene[0]);
+        shuffle(offspring);
+        if (instrumented) {
+            // Allocations of this thread are measured per phase, as work chunks may also run on this thread.
+            stats.addPhaseNanos(Phase.SELECTION, System.nanoTime() - start);
+            stats.addAllocatedBytes(Allocations.since(allocated));
+        }
+
+        // Split parent pairs evenly between work chunks.
+        int pairs = offspringCount / 2;
+        int chunkSize = (pairs + workerRandoms.length - 1) / workerRandoms.length;
+        List<Callable<Void>> chunks = new ArrayList<>(workerRandoms.length);
+        for (int i = 0; i < workerRandoms.length; i++) {
+            int from = Math.min(pairs, i * chunkSize) * 2;
+            int to = Math.min(pairs, (i + 1) * chunkSize) * 2;
+            SplittableRandom workerRandom = workerRandoms[i];
+            GenerationStats workerStats = instrumented ? chunkStats[i] : null;
+            int chunk = i;
+            chunks.add(() -> {
+                chunkEvaluations[chunk] = breed(offspring, from, to, workerRandom, workerStats);
+                return null;
+            });
+        }
+        runAll(chunks);
+        for (int count : chunkEvaluations) {
+            evaluations += count;
+        }
+        long elitismStart = instrumented ? System.nanoTime() : 0;
+        allocated = instrumented ? Allocations.currentThread() : 0;
+
+        // Elitism (Create new generation using children + fittest parents)
+        ArrayList<Gene> nextGeneration = distinctElites
+                ? population.getFittestDistinctGenes(populationSize - offspringCount)
+                : population.getFittestGenes(populationSize - offspringCount);
+        nextGeneration.addAll(Arrays.asList(offspring));
+        population.updateGenes(nextGeneration);
+        generation++;
+
+        if (instrumented) {
+            stats.addPhaseNanos(Phase.ELITISM, System.nanoTime() - elitismStart);
+            stats.addAllocatedBytes(Allocations.since(allocated));
+        }
+
+        if (localSearchGenes > 0) {
+            long localSearchStart = instrumented ? System.nanoTime() : 0;
+            allocated = instrumented ? Allocations.currentThread() : 0;
+            long evaluated = improveFittest();
+            swapEvaluations += evaluated;
+            if (instrumented) {
+                stats.addPhaseNanos(Phase.LOCAL_SEARCH, System.nanoTime() - localSearchStart);
+                stats.addSwapEvaluations(evaluated);
+                stats.addAllocatedBytes(Allocations.since(allocated));
+            }
+        }
+
+        if (instrumented) {
+            record();
+        }
+    }
+
+    /**
+     * Applies local search to copies of the fittest genes in parallel, replacing every gene whose copy was improved.
+     * Genes already known to be local optima are skipped.
+     * @return No. of swaps evaluated.
+     */
+    private long improveFittest() {
+        if (localOptima == null) {
+            localOptima = new LongHashSet(populationSize);
+        } else if (localOptima.size() > 1 << 16) {
+            localOptima.clear();
+        }
+
+        List<Gene> fittest = population.getFittestGenes(Math.min(localSearchGenes, populationSize));
+        Gene[] improved = new Gene[fittest.size()];
+        boolean[] searched = new boolean[fittest.size()]; // Whether each gene was climbed, false for known optima and repeated genes.
+        long[] evaluated = new long[fittest.size()];
+        List<Callable<Void>> chunks = new ArrayList<>(fittest.size());
+        for (int i = 0; i < fittest.size(); i++) {
+            Gene gene = fittest.get(i);
+            if (localOptima.contains(gene.getCanonicalHash()) || fittest.indexOf(gene) < i) {
+                continue;
+            }
+            searched[i] = true;
+            int index = i;
+            chunks.add(() -> {
+                Gene copy = gene.copyTo(pool.acquire());
+                evaluated[index] = copy.climb(localSearchSwaps, bestImprovement);
+                if (copy.getFitness() > gene.getFitness()) {
+                    improved[index] = copy;
+                } else {
+                    pool.release(copy);
+                }
+                return null;
+            });
+        }
+        runAll(chunks);
+
+        long total = 0;
+        ArrayList<Gene> updated = null;
+        for (int i = 0; i < improved.length; i++) {
+            total += evaluated[i];
+            Gene gene = fittest.get(i);
+            if (!searched[i]) {
+                continue;
+            }
+            if (improved[i] == null) {
+                localOptima.add(gene.getCanonicalHash());
+                continue;
+            }
+            if (updated == null) {
+                updated = new ArrayList<>(population.getGenes());
+            }
+            // The population may hold the same gene more than once, every reference is replaced by the improved copy.
+            for (int j = 0; j < updated.size(); j++) {
+                if (updated.get(j) == gene) {
+                    updated.set(j, improved[i]);
+                }
+            }
+        }
+        if (updated != null) {
+            population.updateGenes(updated);
+        }
+        return total;
+    }
+
+    /**
+     * Combines statistics of the generation just created and passes them to every sink.
+     */
+    private void record() {
+        for (GenerationStats chunk : chunkStats) {
+            stats.add(chunk);
+        }
+
+        ArrayList<Gene> genes = population.getGenes();
+        double worst = Double.MAX_VALUE;
+        for (Gene gene : genes) {
+            worst = Math.min(worst, gene.getFitness());
+        }
+        stats.setFitness(population.getFittestGene().getFitness(), population.getTotalFitness() / genes.size(), worst, getDiversity());
+
+        for (MetricsSink sink : sinks) {
+            sink.record(stats);
+        }
+    }
+
+    /**
+     * Adds {@param sink} to receive statistics of every following generation.
+     * Enables timing of fitness evaluation in Gene, which stays enabled for every engine.
+     */
+    public void addMetricsSink(MetricsSink sink) {
+        if (stats == null) {
+            stats = new GenerationStats();
+            chunkStats = new GenerationStats[workerRandoms.length];
+            for (int i = 0; i < chunkStats.length; i++) {
+                chunkStats[i] = new GenerationStats();
+            }
+            Gene.setTimeScoring(true);
+        }
+        sinks = Arrays.copyOf(sinks, sinks.length + 1);
+        sinks[sinks.length - 1] = sink;
+    }
+
+    /**
+     * Applies Crossover and Mutation to parents in {@param offspring} from index {@param from} (inclusive) to {@param to} (exclusive).
+     * Parents are replaced by their children in place.
+     * @param stats Statistics of this chunk, or null if the engine is not instrumented.
+     * @return No. of candidate genes evaluated.
+     */
+    private int breed(Gene[] offspring, int from, int to, SplittableRandom random, GenerationStats stats) {
+        long start = 0;
+        long scoring = 0;
+        long allocated = 0;
+        int evaluations = 0;
+        if (stats != null) {
+            stats.reset(generation + 1);
+            start = System.nanoTime();
+            scoring = Gene.getScoringNanos();
+            allocated = Allocations.currentThread();
+        }
+
+        // Used as upper bound when generating random integers to select 2 random points in a gene for Crossover and Mutation Operation
+        int limit = geneLength - 1;
+
+        // Genes created in this chunk, which can be mutated in place. Selected parents may also be referenced by the population,
+        // or be selected more than once, so they are copied before being mutated.
+        boolean[] owned = new boolean[to - from];
+
+        // Crossover Operation (children reuse genes dropped from previous generations)
+        for (int i = from; i < to; i += 2) {
+            if (random.nextDouble() <= crossoverProbability) {
+                Gene child1 = pool.acquire();
+                Gene child2 = pool.acquire();
+                Crossover.pmxCrossover(offspring[i], offspring[i + 1], random.nextInt(limit), random.nextInt(limit), child1, child2);
+                offspring[i] = child1;
+                offspring[i + 1] = child2;
+                owned[i - from] = true;
+                owned[i + 1 - from] = true;
+                evaluations += 2;
+            }
+        }
+
+        if (stats != null) {
+            // Time spent scoring children is counted as fitness rather than crossover.
+            long now = System.nanoTime();
+            long scored = Gene.getScoringNanos();
+            stats.addPhaseNanos(Phase.CROSSOVER, now - start - (scored - scoring));
+            stats.addPhaseNanos(Phase.FITNESS, scored - scoring);
+            start = now;
+            scoring = scored;
+        }
+
+        // Mutation 1 and 2
+        for (int i = from; i < to; i++) {
+            // Swap Mutation
+            if (random.nextDouble() <= mutationProbability) {
+                if (!owned[i - from]) {
+                    offspring[i] = offspring[i].copyTo(pool.acquire());
+                    owned[i - from] = true;
+                }
+                offspring[i].mutateSwap(random.nextInt(limit), random.nextInt(limit));
+                evaluations++;
+            }
+            // Invert Mutation
+            if (random.nextDouble() <= mutationProbability) {
+                Gene mutated = offspring[i].mutateInvert(random.nextInt(limit), random.nextInt(limit));
+                evaluations++;
+                if (mutated != offspring[i]) {
+                    if (owned[i - from]) {
+                        pool.release(offspring[i]);
+                    }
+                    offspring[i] = mutated;
+                    owned[i - from] = true;
+                }
+            }
+        }
+
+        if (stats != null) {
+            long scored = Gene.getScoringNanos();
+            stats.addPhaseNanos(Phase.MUTATION, System.nanoTime() - start - (scored - scoring));
+            stats.addPhaseNanos(Phase.FITNESS, scored - scoring);
+            stats.addEvaluations(evaluations);
+            stats.addAllocatedBytes(Allocations.since(allocated));
+        }
+        return evaluations;
+    }
+
+    /**
+     * Runs every chunk in {@param chunks}, on the executor if there is one, and waits for all of them to complete.
+     */
+    private void runAll(List<Callable<Void>> chunks) {
+        try {
+            if (executor == null) {
+                for (Callable<Void> chunk : chunks) {
+                    chunk.call();
+                }
+                return;
+            }
+            for (Future<Void> result : executor.invokeAll(chunks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for generation " + (generation + 1), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to create generation " + (generation + 1), e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to create generation " + (generation + 1), e);
+        }
+    }
+
+    /**
+     * Splits off the next RNG stream from the master seed.
+     */
+    private SplittableRandom nextStream() {
+        streamCount++;
+        return streams.split();
+    }
+
+    /**
+     * Randomly permutes {@param genes} in place using the RNG of the current generation.
+     */
+    private void shuffle(Gene[] genes) {
+        for (int i = genes.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Gene temp = genes[i];
+            genes[i] = genes[j];
+            genes[j] = temp;
+        }
+    }
+
+    /**
+     * Replaces the {@param count} least fit genes with new random genes, used to restore diversity of a converged population.
+     */
+    public void reseed(int count) {
+        SplittableRandom reseedRandom = nextStream();
+        List<Gene> genes = new ArrayList<>(count);
+        for (int i = 0; i < Math.min(count, populationSize); i++) {
+            genes.add(new Gene(population.getContext(), reseedRandom));
+        }
+        population.replaceWeakestGenes(genes);
+    }
+
+    /**
+     * Returns a copy of the state of the engine, its population and score caches, which can be written on another thread while
+     * the engine continues. Must be called between generations.
+     */
+    public Checkpoint createCheckpoint() {
+        GeneContext context = population.getContext();
+        int[] aliases = new int[populationSize];
+        Gene[] genes = Checkpoint.copyGenes(population, aliases);
+        ScoreCache fitnessCache = context.getFitnessCache();
+        ScoreCache groupCache = context.getGroupCache();
+        return new Checkpoint(context.calcFingerprint(), seed, streamCount, workerRandoms.length, generation, evaluations,
+                swapEvaluations, crossoverProbability, mutationProbability, genes, aliases, localOptima == null ? null : localOptima.toArray(),
+                fitnessCache == null ? null : fitnessCache.copy(), groupCache == null ? null : groupCache.copy());
+    }
+
+    /**
+     * Restores state saved in {@param checkpoint} (except the population, see {@link Checkpoint#createPopulation}), so that the engine
+     * continues exactly as the checkpointed engine would have. Score caches of the context must have the same capacities as when it was created.
+     * @throws IllegalArgumentException If the checkpoint was created by an engine with a different no. of workers or cache capacities.
+     */
+    public void restore(Checkpoint checkpoint) {
+        if (checkpoint.workers != workerRandoms.length) {
+            throw new IllegalArgumentException("Checkpoint was created by an engine of " + checkpoint.workers
+                    + " workers, results are only reproducible for the same no. of workers");
+        }
+        seed = checkpoint.seed;
+        streams = new SplittableRandom(seed);
+        streamCount = 0;
+        while (streamCount < checkpoint.streamCount) {
+            nextStream();
+        }
+        generation = checkpoint.generation;
+        evaluations = checkpoint.evaluations;
+        swapEvaluations = checkpoint.swapEvaluations;
+        crossoverProbability = checkpoint.crossoverProbability;
+        mutationProbability = checkpoint.mutationProbability;
+        localOptima = null;
+        if (checkpoint.localOptima != null) {
+            localOptima = new LongHashSet(Math.max(populationSize, checkpoint.localOptima.length));
+            for (long hash : checkpoint.localOptima) {
+                localOptima.add(hash);
+            }
+        }
+        restoreCache(population.getContext().getFitnessCache(), checkpoint.fitnessCache);
+        restoreCache(population.getContext().getGroupCache(), checkpoint.groupCache);
+    }
+
+    private static void restoreCache(ScoreCache cache, ScoreCache saved) {
+        if (cache != null && saved != null) {
+            cache.restore(saved);
+        }
+    }
+
+    /**
+     * Returns ratio of genes in the population that form a distinct grouping, 1 if no 2 genes form the same groups.
+     */
+    public double getDiversity() {
+        if (distinctHashes == null) {
+            distinctHashes = new LongHashSet(populationSize);
+        }
+        distinctHashes.clear();
+        for (Gene gene : population.getGenes()) {
+            distinctHashes.add(gene.getCanonicalHash());
+        }
+        return (double) distinctHashes.size() / population.getGenes().size();
+    }
+
+    /**
+     * Returns no. of candidate genes evaluated (created by Crossover or Mutation) by this engine so far.
+     * Swaps scored by local search are not included, see {@link #getSwapEvaluationCount()}.
+     */
+    public long getEvaluationCount() {
+        return evaluations;
+    }
+
+    /**
+     * Returns no. of swaps scored by local search of this engine so far.
+     */
+    public long getSwapEvaluationCount() {
+        return swapEvaluations;
+    }
+
+    /**
+     * Returns the fittest gene of the current generation.
+     */
+    public Gene getFittestGene() {
+        return population.getFittestGene();
+    }
+
+    /**
+     * Returns the population being evolved.
+     */
+    public Population getPopulation() {
+        return population;
+    }
+
+    /**
+     * Returns no. of generations created so far.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Sets whether genes forming the same groups can be selected more than once as parents.
+     */
+    public void setDistinctSelection(boolean distinctSelection) {
+        this.distinctSelection = distinctSelection;
+    }
+
+    /**
+     * Sets whether genes forming the same groups can be kept more than once during elitism.
+     */
+    public void setDistinctElites(boolean distinctElites) {
+        this.distinctElites = distinctElites;
+    }
+
+    /**
+     * Enables local search on the {@param genes} fittest genes of every generation, 0 to disable.
+     * @param maxSwaps Max no. of swaps applied to each gene per generation.
+     * @param bestImprovement Whether to apply the best swap of each pass, rather than every improving swap as it is found.
+     * @throws IllegalArgumentException If local search is enabled for a cohort too large for it, see {@link Gene#canClimb}.
+     */
+    public void setLocalSearch(int genes, int maxSwaps, boolean bestImprovement) {
+        if (genes > 0 && !Gene.canClimb(population.getContext())) {
+            throw new IllegalArgumentException("Local search needs cohort size x no. of groups of at most " + Gene.MAX_CLIMB_COSTS
+                    + " (Gene.MAX_CLIMB_COSTS), as each thread keeps the pair cost between every Person and every group");
+        }
+        this.localSearchGenes = genes;
+        this.localSearchSwaps = maxSwaps;
+        this.bestImprovement = bestImprovement;
+    }
+
+    public double getCrossoverProbability() {
+        return crossoverProbability;
+    }
+
+    public void setCrossoverProbability(double crossoverProbability) {
+        this.crossoverProbability = crossoverProbability;
+    }
+
+    public double getMutationProbability() {
+        return mutationProbability;
+    }
+
+    public void setMutationProbability(double mutationProbability) {
+        this.mutationProbability = mutationProbability;
+    }
+}
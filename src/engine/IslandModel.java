@@ -0,0 +1,168 @@
+package engine;
+
+import geneticsteps.Gene;
+import geneticsteps.Population;
+import termination.Budget;
+import termination.TerminationPolicy;
+import utils.GeneComparator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Evolves several independent populations (islands), each on its own thread.
+ * Every few generations each island sends copies of its fittest genes to another island, where they replace the least fit genes.
+ * Migrants are handed off through lock-free queues, so islands never wait for each other. As a result, island runs are
+ * not reproducible even with a fixed seed.
+ */
+public class IslandModel {
+
+    /**
+     * Determines which island receives the migrants of each island.
+     */
+    public enum Topology {
+        RING, // Island i always sends migrants to island i + 1.
+        RANDOM // Each migration is sent to a randomly chosen other island.
+    }
+
+    private final List<GeneticEngine> islands;
+    private final List<ConcurrentLinkedQueue<List<Gene>>> inboxes; // Migrants waiting to be received by each island.
+    private final int migrationInterval; // No. of generations between migrations.
+    private final int migrantCount; // No. of fittest genes sent by each island per migration.
+    private final Topology topology;
+    private final SplittableRandom[] islandRandoms; // RNG of each island, used to pick destinations in RANDOM topology.
+
+    /**
+     * Creates an island model from {@param islands}, each of which should evolve its own Population.
+     * Islands may use different Crossover and Mutation probabilities.
+     */
+    public IslandModel(List<GeneticEngine> islands, int migrationInterval, int migrantCount, Topology topology, long seed) {
+        this.islands = islands;
+        this.migrationInterval = migrationInterval;
+        this.migrantCount = migrantCount;
+        this.topology = topology;
+        this.inboxes = new ArrayList<>(islands.size());
+        this.islandRandoms = new SplittableRandom[islands.size()];
+
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < islands.size(); i++) {
+            inboxes.add(new ConcurrentLinkedQueue<>());
+            islandRandoms[i] = random.split();
+        }
+    }
+
+    /**
+     * Evolves every island for {@param generations} generations, each island on its own thread.
+     * @return Fittest gene across all islands.
+     */
+    public Gene run(int generations) {
+        return run(() -> new TerminationPolicy().add(new Budget(Budget.Kind.GENERATIONS, generations)));
+    }
+
+    /**
+     * Evolves every island until its own policy, created by {@param policies}, ends its run. Each island runs on its own thread.
+     * @return Fittest gene across all islands.
+     */
+    public Gene run(Supplier<TerminationPolicy> policies) {
+        ExecutorService executor = Executors.newFixedThreadPool(islands.size());
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(islands.size());
+            for (int i = 0; i < islands.size(); i++) {
+                int island = i;
+                TerminationPolicy policy = policies.get();
+                tasks.add(() -> {
+                    evolve(island, policy);
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for islands", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to evolve island", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        return getFittestGene();
+    }
+
+    /**
+     * Evolves island {@param island} until {@param policy} ends its run, migrating every migrationInterval generations.
+     */
+    private void evolve(int island, TerminationPolicy policy) {
+        GeneticEngine engine = islands.get(island);
+        while (!policy.shouldStop(engine)) {
+            engine.nextGeneration();
+            if (islands.size() > 1 && engine.getGeneration() % migrationInterval == 0) {
+                emigrate(island);
+                immigrate(island);
+            }
+        }
+    }
+
+    /**
+     * Sends copies of the fittest genes of island {@param island} to its destination island.
+     */
+    private void emigrate(int island) {
+        Population population = islands.get(island).getPopulation();
+        List<Gene> migrants = new ArrayList<>(migrantCount);
+        for (Gene gene : population.getFittestGenes(migrantCount)) {
+            // Copied, as the original gene can still be modified or recycled by its own population.
+            migrants.add(gene.copyTo(population.getGenePool().acquire()));
+        }
+        inboxes.get(getDestination(island)).offer(migrants);
+    }
+
+    /**
+     * Replaces the least fit genes of island {@param island} with any migrants that have arrived.
+     */
+    private void immigrate(int island) {
+        Population population = islands.get(island).getPopulation();
+        List<Gene> migrants;
+        while ((migrants = inboxes.get(island).poll()) != null) {
+            population.replaceWeakestGenes(migrants);
+        }
+    }
+
+    /**
+     * Returns index of the island that receives migrants from island {@param island}.
+     */
+    private int getDestination(int island) {
+        if (topology == Topology.RING) {
+            return (island + 1) % islands.size();
+        }
+        // Pick from every island except the source.
+        int destination = islandRandoms[island].nextInt(islands.size() - 1);
+        return destination >= island ? destination + 1 : destination;
+    }
+
+    /**
+     * Returns the fittest gene across all islands. Must not be called while islands are running.
+     */
+    public Gene getFittestGene() {
+        List<Gene> best = new ArrayList<>(islands.size());
+        for (GeneticEngine island : islands) {
+            best.add(island.getFittestGene());
+        }
+        best.sort(new GeneComparator());
+        return best.get(0);
+    }
+
+    /**
+     * Returns every island.
+     */
+    public List<GeneticEngine> getIslands() {
+        return islands;
+    }
+}
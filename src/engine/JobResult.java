@@ -0,0 +1,90 @@
+package engine;
+
+import geneticsteps.Gene;
+
+/**
+ * Outcome of a single MatchingJob run by a BatchRunner. A job that failed has no fittest gene, but its error instead.
+ */
+public class JobResult {
+
+    private final MatchingJob job;
+    private final Gene fittest; // Null if job failed.
+    private final int generations;
+    private final long evaluations;
+    private final long swapEvaluations;
+    private final String stopReason;
+    private final long elapsedNanos;
+    private final Throwable error; // Null if job succeeded.
+
+    JobResult(MatchingJob job, Gene fittest, int generations, long evaluations, long swapEvaluations, String stopReason, long elapsedNanos,
+              Throwable error) {
+        this.job = job;
+        this.fittest = fittest;
+        this.generations = generations;
+        this.evaluations = evaluations;
+        this.swapEvaluations = swapEvaluations;
+        this.stopReason = stopReason;
+        this.elapsedNanos = elapsedNanos;
+        this.error = error;
+    }
+
+    public MatchingJob getJob() {
+        return job;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Returns fittest gene found by the job, or null if it failed.
+     */
+    public Gene getFittest() {
+        return fittest;
+    }
+
+    public int getGenerations() {
+        return generations;
+    }
+
+    /**
+     * Returns no. of candidate genes evaluated by the job.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Returns no. of swaps scored by local search and refinement of the job, which are not counted as candidate genes.
+     */
+    public long getSwapEvaluations() {
+        return swapEvaluations;
+    }
+
+    /**
+     * Returns why the job ended, see {@link termination.TerminationPolicy#getReason()}.
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns error the job failed with, or null if it succeeded.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return "Job " + job + " failed after " + elapsedNanos / 1_000_000 + " ms: " + error;
+        }
+        return "Job " + job + " fitness of best gene: " + fittest.getFitness() + " (" + generations + " generations, "
+                + evaluations + " evaluations, " + swapEvaluations + " swaps evaluated, " + elapsedNanos / 1_000_000 + " ms, " + stopReason + ")";
+    }
+}
@@ -0,0 +1,264 @@
+package engine;
+
+import geneticsteps.Initialiser;
+import metrics.MetricsSink;
+import model.Person;
+import model.Weight;
+import model.WeightProfile;
+import termination.Budget;
+import termination.TerminationPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Settings of a single matching job (e.g. one course section) run by a BatchRunner: its cohort, constraints and algorithm settings.
+ * Every job holds its own settings, so jobs with different cohorts and settings can run side by side in the same JVM.
+ * Defaults are the same as the settings in Main.
+ */
+public class MatchingJob {
+
+    private final String name;
+    private final List<Person> persons;
+    private final int groupCount;
+    private final int[] aggregate; // Ids of Persons to group together.
+    private final int[] distribute; // Ids of Persons to separate.
+
+    private WeightProfile profile = Weight.getProfile();
+    private boolean hardConstraints = false; // Whether aggregate and distribute must always hold, rather than being weighed into fitness.
+    private int populationSize = 50;
+    private Initialiser initialiser = Initialiser.random();
+    private double generationGap = 0.9; // Ratio of children to parents in next generation, must be 0 < x < 1.
+    private double crossoverProbability = 0.9;
+    private double mutationProbability = 0.09;
+    private long seed = System.nanoTime();
+    private int workers = 1; // No. of work chunks each generation is split into, results are only reproducible for the same value.
+    private boolean distinctSelection = false;
+    private boolean distinctElites = false;
+    private int localSearchGenes = 0;
+    private int localSearchSwaps = 100;
+    private boolean bestImprovement = false;
+    private Supplier<TerminationPolicy> termination = () -> new TerminationPolicy().add(new Budget(Budget.Kind.GENERATIONS, 500));
+    private final List<MetricsSink> metricsSinks = new ArrayList<>();
+
+    /**
+     * Creates a job splitting {@param persons} into {@param groupCount} equal sized groups.
+     * @param name Name of job, used to report its result.
+     * @param aggregate Array of Ids of Persons to group together.
+     * @param distribute Array of Ids of Persons to separate.
+     */
+    public MatchingJob(String name, List<Person> persons, int groupCount, int[] aggregate, int[] distribute) {
+        if (groupCount < 1 || groupCount > persons.size()) {
+            throw new IllegalArgumentException("Job " + name + " cannot split " + persons.size() + " Persons into " + groupCount + " groups");
+        }
+        this.name = name;
+        this.persons = persons;
+        this.groupCount = groupCount;
+        this.aggregate = aggregate;
+        this.distribute = distribute;
+    }
+
+    /**
+     * Creates job named {@param name} splitting {@param persons} into {@param groupCount} groups, with the same constraints and settings
+     * as this job (apart from its metrics sinks), e.g. a sub-cohort of this job.
+     */
+    public MatchingJob derive(String name, List<Person> persons, int groupCount) {
+        MatchingJob job = new MatchingJob(name, persons, groupCount, aggregate, distribute);
+        job.profile = profile;
+        job.hardConstraints = hardConstraints;
+        job.populationSize = populationSize;
+        job.initialiser = initialiser;
+        job.generationGap = generationGap;
+        job.crossoverProbability = crossoverProbability;
+        job.mutationProbability = mutationProbability;
+        job.seed = seed;
+        job.workers = workers;
+        job.distinctSelection = distinctSelection;
+        job.distinctElites = distinctElites;
+        job.localSearchGenes = localSearchGenes;
+        job.localSearchSwaps = localSearchSwaps;
+        job.bestImprovement = bestImprovement;
+        job.termination = termination;
+        return job;
+    }
+
+    /**
+     * Calculates no. of offspring based on population size & generation gap, ensuring it is a multiple of 2.
+     */
+    public int getOffspringCount() {
+        int count = (int) (populationSize * generationGap);
+        return (count % 2) == 0 ? count : count + 1;
+    }
+
+    /**
+     * Creates termination policy of a run of this job.
+     */
+    public TerminationPolicy createTerminationPolicy() {
+        return termination.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Person> getPersons() {
+        return persons;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    public int[] getAggregate() {
+        return aggregate;
+    }
+
+    public int[] getDistribute() {
+        return distribute;
+    }
+
+    public WeightProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(WeightProfile profile) {
+        this.profile = profile;
+    }
+
+    public boolean isHardConstraints() {
+        return hardConstraints;
+    }
+
+    /**
+     * Sets whether every gene is repaired to satisfy the aggregate and distribute constraints, see {@link geneticsteps.Repair}.
+     */
+    public void setHardConstraints(boolean hardConstraints) {
+        this.hardConstraints = hardConstraints;
+    }
+
+    public int getPopulationSize() {
+        return populationSize;
+    }
+
+    public void setPopulationSize(int populationSize) {
+        this.populationSize = populationSize;
+    }
+
+    public Initialiser getInitialiser() {
+        return initialiser;
+    }
+
+    /**
+     * Sets initialiser creating the initial population, which by default consists of random genes.
+     */
+    public void setInitialiser(Initialiser initialiser) {
+        this.initialiser = initialiser;
+    }
+
+    public double getGenerationGap() {
+        return generationGap;
+    }
+
+    public void setGenerationGap(double generationGap) {
+        this.generationGap = generationGap;
+    }
+
+    public double getCrossoverProbability() {
+        return crossoverProbability;
+    }
+
+    public void setCrossoverProbability(double crossoverProbability) {
+        this.crossoverProbability = crossoverProbability;
+    }
+
+    public double getMutationProbability() {
+        return mutationProbability;
+    }
+
+    public void setMutationProbability(double mutationProbability) {
+        this.mutationProbability = mutationProbability;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets master seed of job, a job with the same seed and no. of workers always produces the same result.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets no. of work chunks each generation is split into, which run in parallel on the evaluation executor of the BatchRunner when > 1.
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public boolean isDistinctSelection() {
+        return distinctSelection;
+    }
+
+    public void setDistinctSelection(boolean distinctSelection) {
+        this.distinctSelection = distinctSelection;
+    }
+
+    public boolean isDistinctElites() {
+        return distinctElites;
+    }
+
+    public void setDistinctElites(boolean distinctElites) {
+        this.distinctElites = distinctElites;
+    }
+
+    public int getLocalSearchGenes() {
+        return localSearchGenes;
+    }
+
+    public int getLocalSearchSwaps() {
+        return localSearchSwaps;
+    }
+
+    public boolean isBestImprovement() {
+        return bestImprovement;
+    }
+
+    /**
+     * Enables local search on the {@param genes} fittest genes of every generation, see {@link GeneticEngine#setLocalSearch}.
+     */
+    public void setLocalSearch(int genes, int maxSwaps, boolean bestImprovement) {
+        this.localSearchGenes = genes;
+        this.localSearchSwaps = maxSwaps;
+        this.bestImprovement = bestImprovement;
+    }
+
+    /**
+     * Sets supplier of the termination policy of each run of this job, the default ends a run after 500 generations.
+     */
+    public void setTermination(Supplier<TerminationPolicy> termination) {
+        this.termination = termination;
+    }
+
+    /**
+     * Adds {@param sink} to receive statistics of every generation of this job, closed once the job ends.
+     */
+    public void addMetricsSink(MetricsSink sink) {
+        metricsSinks.add(sink);
+    }
+
+    public List<MetricsSink> getMetricsSinks() {
+        return metricsSinks;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,130 @@
+package engine;
+
+import geneticsteps.Gene;
+import geneticsteps.GeneContext;
+import geneticsteps.Population;
+import model.WeightProfile;
+import utils.LongHashSet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the fittest gene under each of several weight profiles while a single run evolves under another profile.
+ * Raw fitness components of each distinct gene offered are calculated once, after which scoring it under every profile
+ * is a dot product, so sweeping many profiles shares a single evaluation pipeline instead of needing a run per profile.
+ * Every profile must weigh characteristics the same as the profile of the run, see {@link Gene#getFitness(WeightProfile)}.
+ */
+public class WeightSweep {
+
+    private static final int MAX_SEEN = 1 << 20; // Max no. of hashes of offered genes kept, after which they are forgotten.
+
+    private final WeightProfile[] profiles;
+    private final Gene[] best; // Fittest gene under each profile, copied so it is never overwritten by a GenePool.
+    private final double[] bestFitness;
+    private final LongHashSet seen = new LongHashSet(1024); // Hashes of genes already offered.
+
+    /**
+     * Creates a sweep of {@param profiles}, which must weigh characteristics the same as {@param base}, the profile of the run.
+     */
+    public WeightSweep(WeightProfile base, List<WeightProfile> profiles) {
+        for (WeightProfile profile : profiles) {
+            if (!base.hasSameCharacteristicWeights(profile)) {
+                throw new IllegalArgumentException("Profile " + profile + " weighs characteristics differently from " + base);
+            }
+        }
+        this.profiles = profiles.toArray(new WeightProfile[0]);
+        this.best = new Gene[profiles.size()];
+        this.bestFitness = new double[profiles.size()];
+    }
+
+    /**
+     * Scores {@param gene} under every profile, keeping a copy if it is the fittest under any of them. Genes offered before are skipped.
+     */
+    public void offer(Gene gene) {
+        if (seen.size() >= MAX_SEEN) {
+            seen.clear();
+        }
+        if (!seen.add(gene.getCanonicalHash())) {
+            return;
+        }
+        double[] components = gene.getComponents();
+        Gene copy = null;
+        for (int i = 0; i < profiles.length; i++) {
+            double fitness = profiles[i].calcFitness(components);
+            if (best[i] == null || fitness > bestFitness[i]) {
+                copy = copy == null ? gene.copy() : copy;
+                best[i] = copy;
+                bestFitness[i] = fitness;
+            }
+        }
+    }
+
+    /**
+     * Offers the {@param count} fittest genes of {@param population}, as genes that are unfit under the profile of the run are rarely
+     * the fittest under a similar profile.
+     */
+    public void offerFittest(Population population, int count) {
+        for (Gene gene : population.getFittestGenes(Math.min(count, population.getGenes().size()))) {
+            offer(gene);
+        }
+    }
+
+    /**
+     * Offers every gene of {@param population}.
+     */
+    public void offerAll(Population population) {
+        for (Gene gene : new ArrayList<>(population.getGenes())) {
+            offer(gene);
+        }
+    }
+
+    /**
+     * Writes the fittest gene found under each profile to {@param out}. Genes offered are not written, offering them again changes nothing.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(profiles.length);
+        for (int i = 0; i < profiles.length; i++) {
+            out.writeBoolean(best[i] != null);
+            if (best[i] != null) {
+                best[i].write(out);
+                out.writeDouble(bestFitness[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads fittest genes of {@param context} written by {@link #write(DataOutput)} from {@param in}.
+     * @throws IOException If they were written by a sweep of a different no. of profiles.
+     */
+    public void read(DataInput in, GeneContext context) throws IOException {
+        if (in.readInt() != profiles.length) {
+            throw new IOException("State was written by a sweep of a different no. of profiles");
+        }
+        for (int i = 0; i < profiles.length; i++) {
+            best[i] = in.readBoolean() ? Gene.read(context, in) : null;
+            bestFitness[i] = best[i] == null ? 0 : in.readDouble();
+        }
+    }
+
+    public List<WeightProfile> getProfiles() {
+        return List.of(profiles);
+    }
+
+    /**
+     * Returns fittest gene offered so far under profile {@param index}, or null if none have been offered.
+     */
+    public Gene getBest(int index) {
+        return best[index];
+    }
+
+    /**
+     * Returns fitness of {@link #getBest(int)} under profile {@param index}.
+     */
+    public double getBestFitness(int index) {
+        return bestFitness[index];
+    }
+}
@@ -0,0 +1,131 @@
+package geneticsteps;
+
+import model.Cohort;
+import model.ConstraintIndex;
+
+/**
+ * Stores the weighted cost of every possible pair of Persons in a cohort.
+ * Each pair cost already combines fHetero, fHomo, fPref and fDist with their respective weights,
+ * so calculating fitness only requires array lookups instead of recomputing every pair.
+ */
+public class CostMatrix {
+
+    // Largest cohort size for which pair costs are precomputed. Larger cohorts compute pair costs on demand instead.
+    // Memory used is roughly 4 * size^2 bytes, i.e. ~64MB at the default value.
+    public static int MAX_PRECOMPUTED_LENGTH = 4096;
+
+    // Rows of the group being summed when pair costs are not precomputed, reused by each thread to avoid allocating.
+    private static final ThreadLocal<double[]> rowBuffer = ThreadLocal.withInitial(() -> new double[0]);
+
+    private final Cohort cohort;
+    private final ConstraintIndex constraints;
+    private final double mixWeight; // Weights of fMix, fPref and fDist, taken from the profile of the cohort.
+    private final double preferenceWeight;
+    private final double distributionWeight;
+    private final int[] rowOffset; // Offset of each row in the packed upper triangular array.
+    private final double[] costs; // Packed upper triangular matrix of pair costs, null if not precomputed.
+
+    /**
+     * Builds the pair cost matrix for all Persons in {@param cohort}, with preferences and aggregated/distributed Persons taken from {@param constraints}.
+     */
+    public CostMatrix(Cohort cohort, ConstraintIndex constraints) {
+        this.cohort = cohort;
+        this.constraints = constraints;
+        this.mixWeight = cohort.getProfile().getMix();
+        this.preferenceWeight = cohort.getProfile().getPreference();
+        this.distributionWeight = cohort.getProfile().getDistribution();
+        int length = cohort.size();
+
+        if (length > MAX_PRECOMPUTED_LENGTH) {
+            this.rowOffset = null;
+            this.costs = null;
+            return;
+        }
+
+        // Row i holds pairs (i, j) for j > i, so row i starts after (length - 1) + (length - 2) + ... + (length - i) entries.
+        // Offset is shifted back by (i + 1) so that the entry for (i, j) is simply rowOffset[i] + j.
+        this.rowOffset = new int[length];
+        this.costs = new double[length * (length - 1) / 2];
+        for (int i = 0; i < length; i++) {
+            rowOffset[i] = i * (2 * length - i - 1) / 2 - i - 1;
+            for (int j = i + 1; j < length; j++) {
+                costs[rowOffset[i] + j] = calcPairCost(i, j);
+            }
+        }
+    }
+
+    /**
+     * Returns weighted cost of grouping Persons at cohort indexes {@param index1} and {@param index2} together.
+     */
+    public double getCost(int index1, int index2) {
+        if (costs == null) {
+            return calcPairCost(index1, index2);
+        }
+        return index1 < index2 ? costs[rowOffset[index1] + index2] : costs[rowOffset[index2] + index1];
+    }
+
+    /**
+     * Returns sum of pair costs of every pair of Persons at indexes {@param first} to {@param last} (inclusive) of {@param gene}.
+     * When pair costs are not precomputed, rows of the group are gathered first so that each pair reads from cache.
+     */
+    public double sumGroupCost(int[] gene, int first, int last) {
+        double pairSum = 0;
+        if (costs != null) {
+            for (int j = first; j < last; j++) {
+                for (int k = j + 1; k <= last; k++) {
+                    pairSum += getCost(gene[j], gene[k]);
+                }
+            }
+            return pairSum;
+        }
+
+        double[] rows = getRowBuffer((last - first + 1) * Cohort.CHAR_COUNT);
+        cohort.gatherRows(gene, first, last, rows);
+        for (int j = first; j < last; j++) {
+            int rowJ = (j - first) * Cohort.CHAR_COUNT;
+            for (int k = j + 1; k <= last; k++) {
+                int rowK = (k - first) * Cohort.CHAR_COUNT;
+                pairSum += addConstraintCost(cohort.calcMix(rows, rowJ, rowK) * mixWeight, gene[j], gene[k]);
+            }
+        }
+        return pairSum;
+    }
+
+    private static double[] getRowBuffer(int size) {
+        double[] rows = rowBuffer.get();
+        if (rows.length < size) {
+            rows = new double[size];
+            rowBuffer.set(rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns whether pair costs were precomputed, or are calculated on demand due to the size of the cohort.
+     */
+    public boolean isPrecomputed() {
+        return costs != null;
+    }
+
+    /**
+     * Calculates weighted cost of a single pair, made up of fMix, fPref and fDist contributions of the pair.
+     * Does not allocate, as it is called during fitness evaluation for cohorts too large to precompute.
+     * @return Pair cost, as a double.
+     */
+    private double calcPairCost(int index1, int index2) {
+        return addConstraintCost(cohort.calcMix(index1, index2) * mixWeight, index1, index2);
+    }
+
+    /**
+     * Adds weighted fPref and fDist contributions of a single pair to {@param cost}, skipping lookups whose weight is 0.
+     */
+    private double addConstraintCost(double cost, int index1, int index2) {
+        if (preferenceWeight != 0) {
+            cost += constraints.calcPreferred(index1, index2) * preferenceWeight;
+        }
+        if (distributionWeight != 0) {
+            cost += constraints.calcDistribution(index1, index2) * distributionWeight;
+        }
+        return cost;
+    }
+}
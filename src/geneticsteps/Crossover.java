@@ -17,4 +17,16 @@ public class Crossover {
 
         return new Pair<>(child1, child2);
     }
+
+    /**
+     * Same as {@link #pmxCrossover(Gene, Gene, int, int)}, but overwrites {@param child1} and {@param child2} instead of creating new Genes.
+     * Children are usually acquired from a GenePool, and must not be either parent.
+     */
+    public static void pmxCrossover(Gene parent1, Gene parent2, int random1, int random2, Gene child1, Gene child2) {
+        int leftBound = Math.min(random1, random2);
+        int rightBound = Math.max(random1, random2);
+
+        parent1.crossParent(parent2, leftBound, rightBound, child1);
+        parent2.crossParent(parent1, leftBound, rightBound, child2);
+    }
 }
@@ -1,170 +1,293 @@
 package geneticsteps;
 
+import model.Cohort;
+import model.ConstraintIndex;
 import model.Person;
 import model.Weight;
+import model.WeightProfile;
 
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Gene {
 
-    // Class fields to be set before genetic algorithm can proceed.
-    private static List<Person> baseGene;
-    private static double[] meanHetero; // Mean of each heterogeneous characteristic of all Persons in gene.
-    private static double[] meanHomo; // Mean of each homogeneous characteristic of all Persons in gene.
-    private static int[] groupIndex; // Starting index of each group in gene.
-    public static HashSet<Integer> aggregatedPersons = new HashSet<>(); // Ids of Persons to be grouped together.
-    public static HashSet<Integer> distributedPersons = new HashSet<>(); // Ids of Persons to be separated.
+    // Context used by genes created without one, set by setBaseInfo. Runs of a single cohort can rely on it, while jobs
+    // sharing a JVM should each create their own GeneContext instead.
+    private static GeneContext defaultContext;
+    private static final LongAdder evaluations = new LongAdder(); // No. of candidate genes whose fitness has been evaluated, by every context.
+    private static final LongAdder swapEvaluations = new LongAdder(); // No. of swaps scored by local search, by every context.
+    private static boolean timeScoring = false; // Whether time spent scoring genes is recorded, only enabled for instrumentation.
+    private static final ThreadLocal<long[]> scoringNanos = ThreadLocal.withInitial(() -> new long[1]); // Time spent scoring by each thread.
+
+    // No. of characteristic sums stored per group, hetero characteristics first followed by homo characteristics.
+    private static final int CHAR_COUNT = Cohort.CHAR_COUNT;
+
+    // Layout of partial scores of a single group, each group takes GROUP_WIDTH consecutive values.
+    static final int PAIR = 0; // Sum of pair costs of group.
+    static final int BAL = 1; // fBal contribution of group.
+    static final int CHARS = 2; // Characteristic sums of group (divided by gene length), CHAR_COUNT values.
+    static final int GROUP_WIDTH = CHARS + CHAR_COUNT;
+
+    // Position of each cohort index in the first parent during Crossover, reused by each thread to avoid allocating.
+    private static final ThreadLocal<int[]> positionBuffer = ThreadLocal.withInitial(() -> new int[0]);
+
+    // Summed pair cost between each cohort index and the members of each group during local search, reused by each thread.
+    private static final ThreadLocal<double[]> groupCostBuffer = ThreadLocal.withInitial(() -> new double[0]);
+
+    // Max. cohort size x no. of groups local search runs on, as each thread running it keeps that many pair costs (8 bytes each, 32 MB).
+    public static long MAX_CLIMB_COSTS = 1L << 22;
+
+    // Min. decrease of F (relative to F) for a swap to count as an improvement during local search, so rounding errors never cause endless swapping.
+    private static final double CLIMB_TOLERANCE = 1e-12;
 
 
     // Fields for Gene instance.
-    private final Person[] gene;
-    private final double fitness; // Total fitness of gene.
+    private final GeneContext context; // Cohort gene belongs to.
+    private final int[] gene; // Cohort index of each Person in gene.
+    private double fitness; // Total fitness of gene.
     private final int length;
 
+    // Partial scores of each group (GROUP_WIDTH values per group), kept so that mutations only need to rescore groups that changed.
+    private final double[] groupScores;
+    private boolean scored; // Whether partial scores are up to date, false when fitness was taken from the fitness cache.
+
+    private long hash; // Canonical hash of groups formed by gene, see getCanonicalHash.
+    private double[] components; // Raw fitness components, calculated when first needed and discarded whenever gene is modified.
+
+    int mark; // Used by GenePool to find Genes that are no longer part of a Population.
+
     /**
      * Constructor for Gene, only called when the initial population is being built.
      */
     public Gene(int length) {
-        this.gene = getShuffledBase();
-        this.length = length;
-        this.fitness = calculateFitness(gene);
+        this(length, new SplittableRandom());
+    }
+
+    /**
+     * Same as {@link #Gene(int)}, but uses {@param random} to permute the cohort so that results can be reproduced.
+     */
+    public Gene(int length, SplittableRandom random) {
+        this(defaultContext, random);
+    }
+
+    /**
+     * Creates a random gene of {@param context}, using {@param random} to permute its cohort.
+     */
+    public Gene(GeneContext context, SplittableRandom random) {
+        this(context, context.getShuffledBase(random));
     }
 
     /**
      * Overloaded constructor for Gene, called when generating child genes during Crossover.
+     * Calculates fitness of {@param gene} from scratch.
+     */
+    public Gene(int[] gene, int length) {
+        this(defaultContext, gene);
+    }
+
+    /**
+     * Creates gene of {@param context} from {@param gene}, an array of cohort indexes, and calculates its fitness from scratch.
+     * With hard constraints, {@param gene} is repaired first.
+     */
+    public Gene(GeneContext context, int[] gene) {
+        this.context = context;
+        this.gene = gene;
+        this.length = gene.length;
+        this.groupScores = new double[context.groupIndex.length * GROUP_WIDTH];
+        if (context.repair != null) {
+            context.repair.repair(gene);
+        }
+        long start = startScoring();
+        this.hash = context.calcCanonicalHash(gene);
+        rescore();
+        evaluations.increment();
+        endScoring(start);
+    }
+
+    /**
+     * Overloaded constructor for Gene, called when a mutation produces a new gene with already known partial scores.
      */
-    public Gene(Person[] gene, int length, double fitness) {
+    private Gene(GeneContext context, int[] gene, double[] groupScores) {
+        this.context = context;
         this.gene = gene;
-        this.length = length;
-        this.fitness = fitness;
+        this.length = gene.length;
+        this.groupScores = groupScores;
+        this.fitness = context.sumFitness(groupScores);
+        this.scored = true;
+        this.hash = context.calcCanonicalHash(gene);
+    }
+
+    /**
+     * Creates an unscored Gene of {@param context} whose contents are to be filled in by Crossover, used by GenePool.
+     */
+    static Gene createBuffer(GeneContext context) {
+        return new Gene(context, new int[context.getGeneLength()], new double[context.groupIndex.length * GROUP_WIDTH]);
     }
 
     /**
-     * Creates base array of Person objects, to be used for generating random permutations for initial population.
-     * Stores information related to baseGene, useful for some calculations.
+     * Creates the default context, used by genes and populations created without one.
      * @param geneLength No. of Person objects to randomly generate OR length of non-null {@param customGene}.
      * @param groupNo No. of equal sized groups to form.
      * @param customGene List of Person objects.
      * @param aggregate Array of Ids of Persons to group together.
      * @param distribute Array of Ids of Persons to separate.
+     * @return The new default context.
      */
-    public static void setBaseInfo(int geneLength, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute) {
+    public static GeneContext setBaseInfo(int geneLength, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute) {
+        return setBaseInfo(geneLength, groupNo, customGene, aggregate, distribute, false);
+    }
 
-        // Set baseGene used to generate initial population.
-        baseGene = customGene;
+    /**
+     * Same as {@link #setBaseInfo(int, int, List, int[], int[])}, enforcing {@param aggregate} and {@param distribute} as hard constraints
+     * if {@param hardConstraints} is set.
+     */
+    public static GeneContext setBaseInfo(int geneLength, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute,
+                                          boolean hardConstraints) {
+        defaultContext = new GeneContext(geneLength, groupNo, customGene, aggregate, distribute, Weight.getProfile(), hardConstraints);
+        return defaultContext;
+    }
 
-        // Store Ids of aggregated/distributed Persons into respective HashSet (to calculate fDist).
-        for (int person : aggregate) {
-            aggregatedPersons.add(person);
-        }
-        for (int person : distribute) {
-            distributedPersons.add(person);
-        }
+    /**
+     * Returns context set by {@link #setBaseInfo}.
+     */
+    public static GeneContext getDefaultContext() {
+        return defaultContext;
+    }
 
-        // Store mean of each characteristic of entire gene (to calculate fBal).
-        meanHetero = new double[Weight.HETERO_TOTAL_COUNT];
-        meanHomo = new double[Weight.HOMO_TOTAL_COUNT];
+    /**
+     * Returns weight profile of the default context, which fitness of every gene is calculated with.
+     */
+    public static WeightProfile getProfile() {
+        return defaultContext.getProfile();
+    }
 
-        baseGene.forEach(x -> {
-            double[] hetero = x.getHeterogeneous();
-            double[] homo = x.getHomogeneous();
-            for (int i = 0; i < Weight.HETERO_TOTAL_COUNT; i++) {
-                meanHetero[i] += (hetero[i] / geneLength);
-            }
-            for (int i = 0; i < Weight.HOMO_TOTAL_COUNT; i++) {
-                meanHomo[i] += (homo[i] / geneLength);
-            }
-        });
-
-        // Store index of 1st member of each group in groupIndex (to enable group based calculations).
-        groupIndex = new int[groupNo];
-        for (int i = 0; i < groupNo; i++) {
-            int remainder = geneLength % groupNo;
-            int standard = Math.floorDiv(geneLength, groupNo);
-            if (i < groupNo - remainder) {
-                groupIndex[i] = i * standard;
-            } else {
-                groupIndex[i] = i * standard + (i - (groupNo - remainder));
-            }
-        }
+    /**
+     * Returns preferences and aggregated/distributed Persons of the default context.
+     */
+    public static ConstraintIndex getConstraints() {
+        return defaultContext.getConstraints();
     }
 
     /**
-     * Returns a random permutation of baseGene for generating initial population.
+     * Returns fitness cache of the default context, or null if it is disabled.
      */
-    public static Person[] getShuffledBase() {
-        Collections.shuffle(baseGene);
-        return baseGene.toArray(Person[]::new);
+    public static ScoreCache getFitnessCache() {
+        return defaultContext.getFitnessCache();
     }
 
     /**
-     * Calculates fitness of gene based on several F values as detailed in reference paper.
-     * @param gene Person array to calculate fitness for.
-     * @return Fitness value as a double.
+     * Returns group cache of the default context, or null if it is disabled.
      */
-    public static double calculateFitness(Person[] gene) {
-        double fHetero = 0;
-        double fHomo = 0;
-        double fBal = 0;
-        double fPref = 0;
-        double fDist = 0;
+    public static ScoreCache getGroupCache() {
+        return defaultContext.getGroupCache();
+    }
 
-        // For each group.
-        for (int i = 0; i < groupIndex.length; i++) {
+    /**
+     * Returns a random permutation of cohort indexes of the default context, generated using {@param random}.
+     */
+    public static int[] getShuffledBase(SplittableRandom random) {
+        return defaultContext.getShuffledBase(random);
+    }
 
-            // Index of first group member
-            int firstMem = groupIndex[i];
-            // Index of last group member
-            int lastMem = i < groupIndex.length - 1 ? groupIndex[i + 1] - 1 : gene.length - 1;
+    /**
+     * Calculates fitness of {@param gene} (cohort indexes of the default context), see {@link GeneContext#calculateFitness(int[])}.
+     */
+    public static double calculateFitness(int[] gene) {
+        return defaultContext.calculateFitness(gene);
+    }
 
-            // For each possible pair in current group.
-            for (int j = firstMem; j < lastMem; j++) {
-                for (int k = j + 1; k <= lastMem; k++) {
-                    // fHetero and fHomo to calculate fMix
-                    fHomo += Person.calcSimilarity(gene[j], gene[k]);
-                    fHetero += Person.calcDifference(gene[j], gene[k]);
+    /**
+     * Calculates raw fitness components of {@param gene} (cohort indexes of the default context), see {@link #getComponents()}.
+     */
+    public static double[] calcComponents(int[] gene) {
+        return defaultContext.calcComponents(gene);
+    }
 
-                    fPref += Person.calcPreferred(gene[j], gene[k]);
-                    fDist += Person.calcDistribution(gene[j], gene[k]);
-                }
-            }
+    /**
+     * Adds {@param count} to the no. of candidate genes evaluated.
+     */
+    static void countEvaluations(long count) {
+        evaluations.add(count);
+    }
 
-            // For fBal.
-            double[] groupMeanHetero = new double[Weight.HETERO_TOTAL_COUNT]; // Mean of each hetero characteristic for current group
-            double[] groupMeanHomo = new double[Weight.HOMO_TOTAL_COUNT]; // Same but for homo characteristic
+    /**
+     * Returns no. of candidate genes evaluated so far (created, crossed or mutated), including those whose fitness was cached.
+     */
+    public static long getEvaluationCount() {
+        return evaluations.sum();
+    }
 
-            // Calculate mean char of all members of current group.
-            for (int j = firstMem; j <= lastMem; j++) {
-                double[] hetero = gene[j].getHeterogeneous();
-                double[] homo = gene[j].getHomogeneous();
+    /**
+     * Returns no. of swaps scored by local search so far. Each swap is scored in constant time, so these are not counted as genes evaluated.
+     */
+    public static long getSwapEvaluationCount() {
+        return swapEvaluations.sum();
+    }
 
-                for (int k = 0; k < Weight.HETERO_TOTAL_COUNT; k++) {
-                    groupMeanHetero[k] += (hetero[k] / gene.length);
-                }
-                for (int k = 0; k < Weight.HOMO_TOTAL_COUNT; k++) {
-                    groupMeanHomo[k] += (homo[k] / gene.length);
-                }
-            }
-            // Summing up for fBal.
-            for (int j = 0; j < Weight.HETERO_TOTAL_COUNT; j++) {
-                fBal += Math.pow(groupMeanHetero[j] - meanHetero[j], 2);
-            }
-            for (int j = 0; j < Weight.HOMO_TOTAL_COUNT; j++) {
-                fBal += Math.pow(groupMeanHomo[j] - meanHomo[j], 2);
-            }
+    /**
+     * Sets whether time spent scoring genes is recorded for {@link #getScoringNanos()}, disabled by default as it adds 2 clock reads per gene.
+     */
+    public static void setTimeScoring(boolean enabled) {
+        timeScoring = enabled;
+    }
+
+    /**
+     * Returns total time spent by the current thread scoring genes while timing was enabled.
+     */
+    public static long getScoringNanos() {
+        return scoringNanos.get()[0];
+    }
+
+    private static long startScoring() {
+        return timeScoring ? System.nanoTime() : 0;
+    }
+
+    private static void endScoring(long start) {
+        if (start != 0) {
+            scoringNanos.get()[0] += System.nanoTime() - start;
         }
+    }
 
-        double fMix = fHetero * Weight.WEIGHT_HETEROGENEOUS + fHomo * Weight.WEIGHT_HOMOGENEOUS;
+    /**
+     * Recalculates partial scores of every group and fitness of gene from scratch.
+     */
+    private void rescore() {
+        for (int i = 0; i < context.groupIndex.length; i++) {
+            context.scoreGroup(gene, i, groupScores);
+        }
+        this.fitness = context.sumFitness(groupScores);
+        this.scored = true;
+    }
 
-        // Fitness = 1 / F, hence the inversion of numerator & denominator.
-        return Weight.F_TOTAL_WEIGHT / (fMix * Weight.WEIGHT_MIX + fBal * Weight.WEIGHT_BALANCE + fPref * Weight.WEIGHT_PREFERENCE + fDist * Weight.WEIGHT_DISTRIBUTION);
+    /**
+     * Recalculates partial scores if fitness was taken from context.fitnessCache, must be called before partial scores are used.
+     * Only called on genes being modified in place, as other threads may be reading shared genes.
+     */
+    private void ensureScored() {
+        if (!scored) {
+            rescore();
+        }
+    }
+
+    /**
+     * Returns context of the cohort gene belongs to.
+     */
+    public GeneContext getContext() {
+        return context;
+    }
+
+    /**
+     * Returns canonical hash of the groups formed by this gene.
+     * Genes that form the same groups, regardless of the order of members within groups or the order of groups, have the same hash
+     * (and the same fitness). Different groupings produce the same hash with negligible probability.
+     */
+    public long getCanonicalHash() {
+        return this.hash;
     }
 
     /**
@@ -172,59 +295,506 @@ public class Gene {
      * @param parent2 Second parent to Crossover with.
      */
     public Gene crossParent(Gene parent2, int start, int end) {
-        Person[] child = new Person[this.length];
+        return crossParent(parent2, start, end, createBuffer(context));
+    }
+
+    /**
+     * Crossover operation that overwrites {@param child} instead of creating a new Gene, see {@link #crossParent(Gene, int, int)}.
+     * @param child Gene to store result in, usually acquired from a GenePool. Must not be either parent.
+     * @return {@param child}, rescored.
+     */
+    public Gene crossParent(Gene parent2, int start, int end, Gene child) {
+        int[] result = child.gene;
 
         // Copies selected portion from parent1 to child
-        System.arraycopy(this.gene, start, child, start, end - start + 1);
+        System.arraycopy(this.gene, start, result, start, end - start + 1);
 
-        // Create map between values of selected portion
-        Map<Person, Person> mapping = new HashMap<>();
-        for (int i = start; i <= end; i++) {
-            mapping.put(this.gene[i], parent2.gene[i]);
+        // Store position of every value in parent1, values positioned within selected portion are mapped to the value
+        // at the same position in parent2.
+        int[] position = getPositionBuffer(this.length);
+        for (int i = 0; i < this.length; i++) {
+            position[this.gene[i]] = i;
         }
 
         // Validates child
         for (int i = 0; i < this.length; i++) {
             if (i < start || i > end) {
-                Person value = parent2.gene[i];
-                while (mapping.containsKey(value)) {
-                    value = mapping.get(value);
+                int value = parent2.gene[i];
+                int mapped = position[value];
+                while (mapped >= start && mapped <= end) {
+                    value = parent2.gene[mapped];
+                    mapped = position[value];
                 }
-                child[i] = value;
+                result[i] = value;
+            }
+        }
+
+        // With hard constraints, children are repaired before they are scored, so no evaluation is spent on an infeasible gene.
+        if (context.repair != null) {
+            context.repair.repair(result);
+        }
+
+        long scoringStart = startScoring();
+        evaluations.increment();
+        child.components = null;
+
+        // Children are frequently identical to a recent gene (e.g. when both parents form the same groups), reuse its fitness if cached.
+        child.hash = context.calcCanonicalHash(result);
+        double cached = context.fitnessCache == null ? Double.NaN : context.fitnessCache.get(child.hash);
+        if (Double.isNaN(cached)) {
+            child.rescore();
+            if (context.fitnessCache != null) {
+                context.fitnessCache.put(child.hash, child.fitness);
+            }
+        } else {
+            child.fitness = cached;
+            child.scored = false;
+        }
+        endScoring(scoringStart);
+        return child;
+    }
+
+    /**
+     * Copies contents and fitness of gene into {@param target}, usually acquired from a GenePool.
+     * Used to mutate a gene in place without affecting other references to it.
+     * @return {@param target}.
+     */
+    public Gene copyTo(Gene target) {
+        System.arraycopy(this.gene, 0, target.gene, 0, this.length);
+        System.arraycopy(this.groupScores, 0, target.groupScores, 0, this.groupScores.length);
+        target.fitness = this.fitness;
+        target.scored = this.scored;
+        target.hash = this.hash;
+        target.components = this.components;
+        return target;
+    }
+
+    /**
+     * Returns a copy of gene that is not part of any GenePool, so it is never overwritten.
+     */
+    public Gene copy() {
+        return copyTo(createBuffer(context));
+    }
+
+    /**
+     * Writes contents, fitness and partial scores of gene to {@param out}, in binary.
+     * Partial scores are written as they are rather than recalculated when read, as incremental updates by mutations may differ
+     * from a fresh calculation in the last bits, and a restored gene must behave exactly the same as the original.
+     */
+    public void write(DataOutput out) throws IOException {
+        for (int index : gene) {
+            out.writeInt(index);
+        }
+        out.writeDouble(fitness);
+        out.writeBoolean(scored);
+        if (scored) {
+            for (double score : groupScores) {
+                out.writeDouble(score);
             }
         }
-        return new Gene(child, length, Gene.calculateFitness(child));
+    }
+
+    /**
+     * Reads gene of {@param context} written by {@link #write(DataOutput)} from {@param in}.
+     * @throws IOException If the gene is not a permutation of the cohort of {@param context}.
+     */
+    public static Gene read(GeneContext context, DataInput in) throws IOException {
+        Gene gene = createBuffer(context);
+        boolean[] seen = new boolean[gene.length];
+        for (int i = 0; i < gene.length; i++) {
+            int index = in.readInt();
+            if (index < 0 || index >= gene.length || seen[index]) {
+                throw new IOException("Gene contains invalid or repeated cohort index " + index);
+            }
+            seen[index] = true;
+            gene.gene[i] = index;
+        }
+        gene.fitness = in.readDouble();
+        gene.scored = in.readBoolean();
+        if (gene.scored) {
+            for (int i = 0; i < gene.groupScores.length; i++) {
+                gene.groupScores[i] = in.readDouble();
+            }
+        }
+        gene.hash = context.calcCanonicalHash(gene.gene);
+        return gene;
+    }
+
+    /**
+     * Returns position buffer of current thread, with at least {@param length} elements.
+     */
+    private static int[] getPositionBuffer(int length) {
+        int[] position = positionBuffer.get();
+        if (position.length < length) {
+            position = new int[length];
+            positionBuffer.set(position);
+        }
+        return position;
     }
 
     /**
      * Performs swap mutation using randomly generated indexes {@param start} and {@param end}.
+     * Only the 2 affected groups are rescored, swaps within the same group leave fitness unchanged.
+     * With hard constraints, {@param random1} is swapped with the next Person from {@param random2} onwards it can be exchanged with.
      */
     public Gene mutateSwap(int random1, int random2) {
-        Person temp = gene[random1];
-        gene[random1] = gene[random2];
-        gene[random2] = temp;
+        long start = startScoring();
+        ensureScored();
+        evaluations.increment();
+        components = null;
+        if (context.repair != null && !context.repair.isInterchangeable(gene[random1], gene[random2])) {
+            random2 = findInterchangeable(random1, random2);
+        }
+        applySwap(random1, random2);
+        fitness = context.sumFitness(groupScores);
+        endScoring(start);
         return this;
     }
 
+    /**
+     * Returns first index from {@param from} onwards (wrapping around) of a Person in another group than {@param index}, who can be
+     * swapped with the Person at {@param index} without breaking hard constraints, or {@param index} itself if there is none.
+     */
+    private int findInterchangeable(int index, int from) {
+        for (int step = 0; step < length; step++) {
+            int candidate = (from + step) % length;
+            if (context.groupOf[candidate] != context.groupOf[index] && context.repair.isInterchangeable(gene[index], gene[candidate])) {
+                return candidate;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Swaps Persons at indexes {@param random1} and {@param random2}, updating hash and partial scores of both groups but not fitness.
+     */
+    private void applySwap(int random1, int random2) {
+        int first = gene[random1];
+        int second = gene[random2];
+        int firstGroup = context.groupOf[random1];
+        int secondGroup = context.groupOf[random2];
+
+        if (firstGroup != secondGroup) {
+            // Update hash of both groups by replacing the hash of the swapped member.
+            long firstHash = context.calcGroupHash(gene, firstGroup);
+            long secondHash = context.calcGroupHash(gene, secondGroup);
+            long memberDelta = GeneContext.mix(second + 1) - GeneContext.mix(first + 1);
+            hash += GeneContext.mix(firstHash + memberDelta) - GeneContext.mix(firstHash) + GeneContext.mix(secondHash - memberDelta) - GeneContext.mix(secondHash);
+
+            int firstOffset = firstGroup * GROUP_WIDTH;
+            int secondOffset = secondGroup * GROUP_WIDTH;
+            groupScores[firstOffset + PAIR] += swapPairDelta(firstGroup, random1, first, second);
+            groupScores[secondOffset + PAIR] += swapPairDelta(secondGroup, random2, second, first);
+
+            context.addChars(groupScores, firstOffset + CHARS, first, -1);
+            context.addChars(groupScores, firstOffset + CHARS, second, 1);
+            context.addChars(groupScores, secondOffset + CHARS, second, -1);
+            context.addChars(groupScores, secondOffset + CHARS, first, 1);
+            groupScores[firstOffset + BAL] = context.calcBalance(groupScores, firstOffset + CHARS);
+            groupScores[secondOffset + BAL] = context.calcBalance(groupScores, secondOffset + CHARS);
+        }
+
+        gene[random1] = second;
+        gene[random2] = first;
+    }
+
+    /**
+     * Returns change in pair cost of {@param group} when {@param removed} at {@param index} is replaced by {@param added}.
+     */
+    private double swapPairDelta(int group, int index, int removed, int added) {
+        double delta = 0;
+        for (int i = context.groupIndex[group]; i <= context.getLastMember(group, length); i++) {
+            if (i != index) {
+                delta += context.costMatrix.getCost(added, gene[i]) - context.costMatrix.getCost(removed, gene[i]);
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Hill climbing local search, repeatedly swapping 2 Persons of different groups while doing so improves fitness. Modifies gene in place.
+     * With hard constraints, only Persons that can be exchanged without breaking them are swapped.
+     * Each swap is scored in constant time from the pair cost between every Person and every group, which is updated as swaps are applied.
+     * These costs take cohort size x no. of groups doubles per thread and O(N^2) pair costs to set up on every call, see {@link #canClimb}.
+     * @param maxSwaps Max no. of swaps to apply, search also ends once no swap improves fitness (a local optimum).
+     * @param bestImprovement Whether to apply the best swap of each pass over the gene, rather than every improving swap as it is found.
+     * @return No. of swaps evaluated.
+     */
+    public long climb(int maxSwaps, boolean bestImprovement) {
+        long start = startScoring();
+        ensureScored();
+        components = null;
+        int groups = context.groupIndex.length;
+        if (!canClimb(context)) {
+            throw new IllegalStateException("Local search of " + context.getCohort().size() + " Persons in " + groups
+                    + " groups needs more than MAX_CLIMB_COSTS pair costs per thread");
+        }
+        double[] groupCost = getGroupCostBuffer(context.getCohort().size() * groups);
+        initGroupCosts(groupCost, groups);
+
+        long evaluated = 0;
+        int swaps = 0;
+        boolean improved = true;
+        while (improved && swaps < maxSwaps) {
+            improved = false;
+            double threshold = -CLIMB_TOLERANCE * (context.totalWeight / context.sumFitness(groupScores));
+            double bestDelta = threshold;
+            int bestFirst = -1;
+            int bestSecond = -1;
+
+            // Only pairs of indexes in different groups are tried, each pair once.
+            for (int i = 0; i < length - 1 && swaps < maxSwaps; i++) {
+                int nextGroup = context.groupOf[i] + 1;
+                if (nextGroup == groups) {
+                    break;
+                }
+                for (int j = context.groupIndex[nextGroup]; j < length; j++) {
+                    if (context.repair != null && !context.repair.isInterchangeable(gene[i], gene[j])) {
+                        continue;
+                    }
+                    double delta = calcSwapDelta(groupCost, groups, i, j);
+                    evaluated++;
+                    if (delta < bestDelta) {
+                        if (bestImprovement) {
+                            bestDelta = delta;
+                            bestFirst = i;
+                            bestSecond = j;
+                        } else {
+                            swapTracked(groupCost, groups, i, j);
+                            improved = true;
+                            if (++swaps == maxSwaps) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (bestFirst >= 0) {
+                swapTracked(groupCost, groups, bestFirst, bestSecond);
+                improved = true;
+                swaps++;
+            }
+        }
+
+        fitness = context.sumFitness(groupScores);
+        swapEvaluations.add(evaluated);
+        endScoring(start);
+        return evaluated;
+    }
+
+    /**
+     * Hill climbing local search between groups {@param first} and {@param second} only, repeatedly swapping a member of one with a
+     * member of the other while doing so improves fitness. Modifies gene in place.
+     * Each swap is scored from the members of both groups alone, so unlike {@link #climb} the cost does not depend on the gene length.
+     * @param maxSwaps Max no. of swaps to apply.
+     * @return No. of swaps evaluated.
+     */
+    public long climbBetween(int first, int second, int maxSwaps) {
+        long start = startScoring();
+        ensureScored();
+        components = null;
+        double threshold = -CLIMB_TOLERANCE * (context.totalWeight / context.sumFitness(groupScores));
+        int firstEnd = context.getLastMember(first, length);
+        int secondEnd = context.getLastMember(second, length);
+
+        long evaluated = 0;
+        int swaps = 0;
+        boolean improved = first != second;
+        while (improved && swaps < maxSwaps) {
+            improved = false;
+            for (int i = context.groupIndex[first]; i <= firstEnd && swaps < maxSwaps; i++) {
+                for (int j = context.groupIndex[second]; j <= secondEnd; j++) {
+                    int p = gene[i];
+                    int q = gene[j];
+                    if (context.repair != null && !context.repair.isInterchangeable(p, q)) {
+                        continue;
+                    }
+                    double delta = swapPairDelta(first, i, p, q) + swapPairDelta(second, j, q, p)
+                            + calcBalanceDelta(first, second, p, q) * context.balanceWeight;
+                    evaluated++;
+                    if (delta < threshold) {
+                        applySwap(i, j);
+                        improved = true;
+                        if (++swaps == maxSwaps) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        fitness = context.sumFitness(groupScores);
+        swapEvaluations.add(evaluated);
+        endScoring(start);
+        return evaluated;
+    }
+
+    /**
+     * Returns whether genes of {@param context} are small enough for {@link #climb}, i.e. cohort size x no. of groups is at most MAX_CLIMB_COSTS.
+     * {@link #climbBetween} keeps no such costs and works on any context.
+     */
+    public static boolean canClimb(GeneContext context) {
+        return (long) context.getCohort().size() * context.getGroupCount() <= MAX_CLIMB_COSTS;
+    }
+
+    /**
+     * Fills {@param groupCost} with the summed pair cost between each cohort index and the other members of each group.
+     */
+    private void initGroupCosts(double[] groupCost, int groups) {
+        Arrays.fill(groupCost, 0, context.getCohort().size() * groups, 0);
+        for (int i = 0; i < length; i++) {
+            int rowI = gene[i] * groups;
+            for (int k = i + 1; k < length; k++) {
+                double cost = context.costMatrix.getCost(gene[i], gene[k]);
+                groupCost[rowI + context.groupOf[k]] += cost;
+                groupCost[gene[k] * groups + context.groupOf[i]] += cost;
+            }
+        }
+    }
+
+    /**
+     * Returns change in F (the inverse of fitness) if Persons at indexes {@param first} and {@param second} (of different groups) were swapped.
+     */
+    private double calcSwapDelta(double[] groupCost, int groups, int first, int second) {
+        int p = gene[first];
+        int q = gene[second];
+        int a = context.groupOf[first];
+        int b = context.groupOf[second];
+        double pairCost = context.costMatrix.getCost(p, q);
+        double pairDelta = groupCost[q * groups + a] - groupCost[p * groups + a]
+                + groupCost[p * groups + b] - groupCost[q * groups + b] - 2 * pairCost;
+        return pairDelta + calcBalanceDelta(a, b, p, q) * context.balanceWeight;
+    }
+
+    /**
+     * Returns change in fBal if Person {@param p} of group {@param a} and Person {@param q} of group {@param b} were swapped.
+     */
+    private double calcBalanceDelta(int a, int b, int p, int q) {
+        // Balance of both groups once the characteristics of p and q are exchanged.
+        int offsetA = a * GROUP_WIDTH + CHARS;
+        int offsetB = b * GROUP_WIDTH + CHARS;
+        int rowP = p * CHAR_COUNT;
+        int rowQ = q * CHAR_COUNT;
+        double[] scaledChars = context.scaledChars;
+        double[] means = context.means;
+        double balA = 0;
+        double balB = 0;
+        for (int k = 0; k < CHAR_COUNT; k++) {
+            double change = scaledChars[rowQ + k] - scaledChars[rowP + k];
+            double diffA = groupScores[offsetA + k] + change - means[k];
+            double diffB = groupScores[offsetB + k] - change - means[k];
+            balA += diffA * diffA;
+            balB += diffB * diffB;
+        }
+        return balA + balB - groupScores[a * GROUP_WIDTH + BAL] - groupScores[b * GROUP_WIDTH + BAL];
+    }
+
+    /**
+     * Swaps Persons at indexes {@param first} and {@param second} (of different groups), updating {@param groupCost} to match.
+     */
+    private void swapTracked(double[] groupCost, int groups, int first, int second) {
+        int p = gene[first];
+        int q = gene[second];
+        int a = context.groupOf[first];
+        int b = context.groupOf[second];
+        applySwap(first, second);
+
+        // Every other Person now has q instead of p in group a, and p instead of q in group b.
+        for (int k = 0; k < length; k++) {
+            if (k == first || k == second) {
+                continue;
+            }
+            int row = gene[k] * groups;
+            double change = context.costMatrix.getCost(gene[k], q) - context.costMatrix.getCost(gene[k], p);
+            groupCost[row + a] += change;
+            groupCost[row + b] -= change;
+        }
+        double pairCost = context.costMatrix.getCost(p, q);
+        groupCost[p * groups + a] += pairCost;
+        groupCost[p * groups + b] -= pairCost;
+        groupCost[q * groups + b] += pairCost;
+        groupCost[q * groups + a] -= pairCost;
+    }
+
+    /**
+     * Returns group cost buffer of current thread, with at least {@param size} elements.
+     */
+    private static double[] getGroupCostBuffer(int size) {
+        double[] groupCost = groupCostBuffer.get();
+        if (groupCost.length < size) {
+            groupCost = new double[size];
+            groupCostBuffer.set(groupCost);
+        }
+        return groupCost;
+    }
+
     /**
      * Performs invert mutation, with condition to only apply when result is fitter than input.
      * Uses randomly generated indexes {@param start} and {@param end}.
+     * Only groups whose members are changed by the inversion are rescored.
      */
     public Gene mutateInvert(int random1, int random2) {
         int left = Math.min(random1, random2);
         int right = Math.max(random1, random2);
 
-        Person[] result = Arrays.copyOf(this.gene, this.length);
+        int[] result = Arrays.copyOf(this.gene, this.length);
+
+        for (int i = left, j = right; i < j; i++, j--) {
+            int temp = result[i];
+            result[i] = result[j];
+            result[j] = temp;
+        }
+
+        boolean repaired = context.repair != null && context.repair.repair(result) > 0;
+        if (!scored) {
+            // Partial scores are out of date, but are not recalculated here as this gene may be shared with other threads.
+            Gene mutated = new Gene(context, result);
+            return (mutated.getFitness() > this.getFitness()) ? mutated : this;
+        }
+
+        long start = startScoring();
+        evaluations.increment();
+        double[] resultScores = Arrays.copyOf(this.groupScores, this.groupScores.length);
+        boolean[] rescored = repaired ? new boolean[context.groupIndex.length] : null;
+
+        // A group only changes if one of its members is swapped with a member of another group.
+        for (int group = context.groupOf[left]; group <= context.groupOf[right]; group++) {
+            int first = Math.max(left, context.groupIndex[group]);
+            int last = Math.min(right, context.getLastMember(group, length));
+            for (int i = first; i <= last; i++) {
+                if (context.groupOf[left + right - i] != group) {
+                    context.scoreGroup(result, group, resultScores);
+                    if (repaired) {
+                        rescored[group] = true;
+                    }
+                    break;
+                }
+            }
+        }
 
-        while (left < right) {
-            Person temp = result[left];
-            result[left] = result[right];
-            result[right] = temp;
-            left++;
-            right--;
+        // Repair may also have moved Persons of other groups, which are rescored unless they already were.
+        if (repaired) {
+            for (int i = 0; i < length; i++) {
+                int inverted = i >= left && i <= right ? gene[left + right - i] : gene[i];
+                int group = context.groupOf[i];
+                if (result[i] != inverted && !rescored[group]) {
+                    context.scoreGroup(result, group, resultScores);
+                    rescored[group] = true;
+                }
+            }
         }
-        double fitness = calculateFitness(result);
-        return (fitness > this.getFitness()) ? new Gene(result, this.length, fitness) : this;
+
+        Gene mutated = new Gene(context, result, resultScores);
+        endScoring(start);
+        return (mutated.getFitness() > this.getFitness()) ? mutated : this;
+    }
+
+    /**
+     * Returns no. of Persons placed against the hard constraints of the context, always 0 if there are none.
+     */
+    public int countViolations() {
+        return context.repair == null ? 0 : context.repair.countViolations(gene);
     }
 
     /**
@@ -234,28 +804,85 @@ public class Gene {
         return this.fitness;
     }
 
+    /**
+     * Returns fitness of gene under {@param other} instead of the profile it was evaluated with, calculated from its raw components.
+     * @throws IllegalArgumentException If {@param other} weighs characteristics differently, as the components would then differ.
+     */
+    public double getFitness(WeightProfile other) {
+        WeightProfile profile = context.getProfile();
+        if (!profile.hasSameCharacteristicWeights(other)) {
+            throw new IllegalArgumentException("Profile " + other + " weighs characteristics differently from " + profile + ", genes must be evaluated again");
+        }
+        return other.calcFitness(getComponents());
+    }
+
+    /**
+     * Returns raw fitness components of gene, indexed by WeightProfile.HETERO, HOMO, BALANCE, PREFERENCE and DISTRIBUTION.
+     * Calculated on first use and kept until gene is modified, so ranking genes under several profiles evaluates each gene once.
+     * The returned array must not be modified.
+     */
+    public double[] getComponents() {
+        double[] result = components;
+        if (result == null) {
+            result = context.calcComponents(gene);
+            components = result;
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
-        StringBuilder result = new StringBuilder();
-        for(int i = 0; i < length; i++) {
-            result.append(gene[i]).append(" ");
-        }
+        StringBuilder result = new StringBuilder(length * 4);
+        appendTo(result);
         return result.toString();
     }
 
     /**
-     * Prints gene where all Persons are sorted into their respective groups (denoted by a new line).
+     * Appends Id of every Person in gene to {@param out}, each followed by a space.
      */
-    public void printAsGroup() {
-        System.out.println("Fitness: " + this.fitness);
-        for (int i = 0; i < groupIndex.length; i++) {
-            int firstMem = groupIndex[i];
-            int lastMem = i < groupIndex.length - 1 ? groupIndex[i + 1] - 1 : gene.length - 1;
-            ArrayList<Integer> groupList = new ArrayList<>();
+    public void appendTo(StringBuilder out) {
+        for (int i = 0; i < length; i++) {
+            out.append(context.getCohort().getPerson(gene[i]).getId()).append(' ');
+        }
+    }
+
+    /**
+     * Returns Ids of the members of each group, sorted in ascending order within each group.
+     */
+    public int[][] getGroupIds() {
+        int[][] groups = new int[context.groupIndex.length][];
+        for (int i = 0; i < context.groupIndex.length; i++) {
+            int firstMem = context.groupIndex[i];
+            int lastMem = context.getLastMember(i, gene.length);
+            int[] groupIds = new int[lastMem - firstMem + 1];
             for (int j = firstMem; j <= lastMem; j++) {
-                groupList.add(gene[j].getId());
+                groupIds[j - firstMem] = context.getCohort().getPerson(gene[j]).getId();
             }
-            System.out.println(groupList.stream().sorted().map(String::valueOf).collect(Collectors.joining(" ")));
+            Arrays.sort(groupIds);
+            groups[i] = groupIds;
         }
+        return groups;
+    }
+
+    /**
+     * Appends fitness of gene followed by the Ids of each group to {@param out}, one line per group.
+     */
+    public void appendGroups(StringBuilder out) {
+        out.append("Fitness: ").append(this.fitness).append('\n');
+        for (int[] group : getGroupIds()) {
+            for (int j = 0; j < group.length; j++) {
+                out.append(j == 0 ? "" : " ").append(group[j]);
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Prints gene where all Persons are sorted into their respective groups (denoted by a new line).
+     */
+    public void printAsGroup() {
+        StringBuilder out = new StringBuilder(length * 4);
+        appendGroups(out);
+        System.out.print(out);
     }
 }
@@ -0,0 +1,342 @@
+package geneticsteps;
+
+import model.Cohort;
+import model.ConstraintIndex;
+import model.Person;
+import model.Weight;
+import model.WeightProfile;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Cohort of a single matching job and everything derived from it that genes need to be scored: pair costs, group layout,
+ * constraints, weights and score caches. Every Gene belongs to a context, so several jobs can run in the same JVM without sharing state.
+ * A context is immutable once created (apart from its thread-safe caches) and may be shared by any no. of populations and threads.
+ */
+public class GeneContext {
+
+    private final Cohort cohort; // All Persons in gene, genes store the index of each Person in cohort.
+    private final int geneLength;
+    final double[] scaledChars; // Characteristic table of cohort divided by gene length, CHAR_COUNT values per Person.
+    final double[] means; // Mean of each characteristic of all Persons in gene.
+    final int[] groupIndex; // Starting index of each group in gene.
+    final int[] groupOf; // Group that each index in gene belongs to.
+    final CostMatrix costMatrix; // Weighted cost of every pair of Persons (for fMix, fPref and fDist).
+    final ScoreCache fitnessCache; // Fitness of recently scored genes by canonical hash, null if disabled.
+    private final ScoreCache groupCache; // Partial scores of recently scored groups by hash of their members, null if disabled.
+    private final ConstraintIndex constraints; // Preferences and aggregated/distributed Persons of cohort.
+    private final WeightProfile profile; // Weights fitness is calculated with, taken from the cohort.
+    final double totalWeight; // Sum of weights of fMix, fBal, fDist and fPref in profile.
+    final double balanceWeight; // Weight of fBal in profile.
+    final Repair repair; // Enforces aggregated/distributed Persons as hard constraints, null if they are only soft (fDist).
+
+    /**
+     * Same as {@link #GeneContext(int, int, List, int[], int[], WeightProfile)}, weighed by {@link Weight#getProfile()}.
+     */
+    public GeneContext(int geneLength, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute) {
+        this(geneLength, groupNo, customGene, aggregate, distribute, Weight.getProfile());
+    }
+
+    /**
+     * Same as {@link #GeneContext(int, int, List, int[], int[], WeightProfile, boolean)}, with aggregated/distributed Persons as soft constraints.
+     */
+    public GeneContext(int geneLength, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute, WeightProfile profile) {
+        this(geneLength, groupNo, customGene, aggregate, distribute, profile, false);
+    }
+
+    /**
+     * Creates context of a cohort of Person objects, whose indexes are randomly permuted to generate the initial population.
+     * @param geneLength Length of {@param customGene}.
+     * @param groupNo No. of equal sized groups to form.
+     * @param customGene List of Person objects.
+     * @param aggregate Array of Ids of Persons to group together.
+     * @param distribute Array of Ids of Persons to separate.
+     * @param profile Weights fitness is calculated with.
+     * @param hardConstraints Whether every gene is repaired to satisfy {@param aggregate} and {@param distribute}, see {@link Repair}.
+     */
+    public GeneContext(int geneLength, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute, WeightProfile profile,
+                       boolean hardConstraints) {
+        this.geneLength = geneLength;
+
+        // Set cohort used to generate initial population.
+        this.cohort = new Cohort(customGene, profile);
+        this.profile = profile;
+        this.totalWeight = profile.getTotalWeight();
+        this.balanceWeight = profile.getBalance();
+        double[] characteristics = cohort.getCharacteristics();
+        this.scaledChars = new double[characteristics.length];
+        for (int i = 0; i < characteristics.length; i++) {
+            scaledChars[i] = characteristics[i] / geneLength;
+        }
+        this.means = cohort.getMeans();
+
+        // Index preferences and aggregated/distributed Persons by cohort index (to calculate fPref and fDist).
+        this.constraints = new ConstraintIndex(cohort, aggregate, distribute);
+
+        // Precompute weighted cost of every pair (to calculate fMix, fPref and fDist).
+        this.costMatrix = new CostMatrix(cohort, constraints);
+        this.fitnessCache = ScoreCache.FITNESS_CAPACITY > 0 ? new ScoreCache(ScoreCache.FITNESS_CAPACITY, 1) : null;
+        this.groupCache = ScoreCache.GROUP_CAPACITY > 0 ? new ScoreCache(ScoreCache.GROUP_CAPACITY, Gene.GROUP_WIDTH) : null;
+
+        // Store index of 1st member of each group in groupIndex (to enable group based calculations).
+        this.groupIndex = new int[groupNo];
+        for (int i = 0; i < groupNo; i++) {
+            int remainder = geneLength % groupNo;
+            int standard = Math.floorDiv(geneLength, groupNo);
+            if (i < groupNo - remainder) {
+                groupIndex[i] = i * standard;
+            } else {
+                groupIndex[i] = i * standard + (i - (groupNo - remainder));
+            }
+        }
+
+        // Store group of every index (to find groups affected by mutations).
+        this.groupOf = new int[geneLength];
+        for (int i = 0; i < groupNo; i++) {
+            for (int j = groupIndex[i]; j <= getLastMember(i, geneLength); j++) {
+                groupOf[j] = i;
+            }
+        }
+        this.repair = hardConstraints ? new Repair(this) : null;
+    }
+
+    public Cohort getCohort() {
+        return cohort;
+    }
+
+    public int getGeneLength() {
+        return geneLength;
+    }
+
+    public int getGroupCount() {
+        return groupIndex.length;
+    }
+
+    /**
+     * Returns no. of Persons group {@param group} holds in the group layout, which differs by at most 1 between groups.
+     */
+    public int getGroupSize(int group) {
+        return getLastMember(group, geneLength) - groupIndex[group] + 1;
+    }
+
+    /**
+     * Returns weight profile which fitness of every gene of this context is calculated with.
+     */
+    public WeightProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Returns preferences and aggregated/distributed Persons of the cohort.
+     */
+    public ConstraintIndex getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Returns repair operator enforcing aggregated/distributed Persons as hard constraints, or null if they are only soft constraints.
+     */
+    public Repair getRepair() {
+        return repair;
+    }
+
+    /**
+     * Returns cache of gene fitness values by canonical hash, or null if it is disabled.
+     */
+    public ScoreCache getFitnessCache() {
+        return fitnessCache;
+    }
+
+    /**
+     * Returns cache of group partial scores by hash of group members, or null if it is disabled.
+     */
+    public ScoreCache getGroupCache() {
+        return groupCache;
+    }
+
+    /**
+     * Returns a hash of the Persons, characteristics, weights, group layout and hard constraints of this context, so that state saved from a run
+     * (e.g. a checkpoint) can be checked to belong to the same job before it is restored.
+     */
+    public long calcFingerprint() {
+        long hash = mix(geneLength) + mix(groupIndex.length) * 31;
+        for (int i = 0; i < cohort.size(); i++) {
+            hash = hash * 31 + mix(cohort.getPerson(i).getId());
+        }
+        for (double value : scaledChars) {
+            hash = hash * 31 + mix(Double.doubleToLongBits(value));
+        }
+        hash = hash * 31 + mix(Double.doubleToLongBits(totalWeight));
+        hash = hash * 31 + mix(Double.doubleToLongBits(balanceWeight));
+        hash = hash * 31 + mix(repair != null ? 1 : 0);
+        return hash;
+    }
+
+    /**
+     * Returns a random permutation of cohort indexes generated using {@param random}.
+     */
+    public int[] getShuffledBase(SplittableRandom random) {
+        int[] shuffled = new int[cohort.size()];
+        for (int i = 0; i < shuffled.length; i++) {
+            int j = random.nextInt(i + 1);
+            shuffled[i] = shuffled[j];
+            shuffled[j] = i;
+        }
+        return shuffled;
+    }
+
+    /**
+     * Returns index of last member of group {@param group} in a gene of length {@param geneLength}.
+     */
+    int getLastMember(int group, int geneLength) {
+        return group < groupIndex.length - 1 ? groupIndex[group + 1] - 1 : geneLength - 1;
+    }
+
+    /**
+     * Calculates fitness of gene based on several F values as detailed in reference paper.
+     * @param gene Array of cohort indexes to calculate fitness for.
+     * @return Fitness value as a double.
+     */
+    public double calculateFitness(int[] gene) {
+        Gene.countEvaluations(1);
+        double[] groupScores = new double[groupIndex.length * Gene.GROUP_WIDTH];
+
+        // For each group.
+        for (int i = 0; i < groupIndex.length; i++) {
+            scoreGroup(gene, i, groupScores);
+        }
+        return sumFitness(groupScores);
+    }
+
+    /**
+     * Calculates partial scores of group {@param group} in {@param gene}, storing them in {@param groupScores}.
+     * Groups with the same members always have the same partial scores, so they are taken from groupCache when possible.
+     */
+    void scoreGroup(int[] gene, int group, double[] groupScores) {
+        int offset = group * Gene.GROUP_WIDTH;
+        long key = 0;
+        if (groupCache != null) {
+            key = calcGroupHash(gene, group);
+            if (groupCache.get(key, groupScores, offset)) {
+                return;
+            }
+        }
+
+        // Index of first group member
+        int firstMem = groupIndex[group];
+        // Index of last group member
+        int lastMem = getLastMember(group, gene.length);
+
+        // For each possible pair in current group, sum weighted fMix, fPref and fDist taken from costMatrix.
+        groupScores[offset + Gene.PAIR] = costMatrix.sumGroupCost(gene, firstMem, lastMem);
+
+        // Calculate mean char of all members of current group (for fBal).
+        Arrays.fill(groupScores, offset + Gene.CHARS, offset + Gene.GROUP_WIDTH, 0);
+        for (int j = firstMem; j <= lastMem; j++) {
+            addChars(groupScores, offset + Gene.CHARS, gene[j], 1);
+        }
+        groupScores[offset + Gene.BAL] = calcBalance(groupScores, offset + Gene.CHARS);
+
+        if (groupCache != null) {
+            groupCache.put(key, groupScores, offset);
+        }
+    }
+
+    /**
+     * Adds ({@param sign} = 1) or removes ({@param sign} = -1) characteristics of {@param person} from the group sums at {@param offset}.
+     */
+    void addChars(double[] groupChars, int offset, int person, int sign) {
+        int row = person * Cohort.CHAR_COUNT;
+        for (int k = 0; k < Cohort.CHAR_COUNT; k++) {
+            groupChars[offset + k] += sign * scaledChars[row + k];
+        }
+    }
+
+    /**
+     * Calculates fBal contribution of a single group from its characteristic sums at {@param offset}.
+     */
+    double calcBalance(double[] groupChars, int offset) {
+        double fBal = 0;
+        for (int j = 0; j < Cohort.CHAR_COUNT; j++) {
+            double difference = groupChars[offset + j] - means[j];
+            fBal += difference * difference;
+        }
+        return fBal;
+    }
+
+    /**
+     * Combines partial scores of every group into the fitness of a gene.
+     */
+    double sumFitness(double[] groupScores) {
+        double fPair = 0; // Weighted sum of fMix, fPref and fDist.
+        double fBal = 0;
+        for (int offset = 0; offset < groupScores.length; offset += Gene.GROUP_WIDTH) {
+            fPair += groupScores[offset + Gene.PAIR];
+            fBal += groupScores[offset + Gene.BAL];
+        }
+
+        // Fitness = 1 / F, hence the inversion of numerator & denominator.
+        return totalWeight / (fPair + fBal * balanceWeight);
+    }
+
+    /**
+     * Calculates canonical hash of groups formed by {@param gene}.
+     * Hash of each group is the sum of hashes of its members, and hash of the gene is the sum of hashes of its groups,
+     * so reordering members within a group or reordering groups does not change the result.
+     */
+    long calcCanonicalHash(int[] gene) {
+        long hash = 0;
+        for (int i = 0; i < groupIndex.length; i++) {
+            hash += mix(calcGroupHash(gene, i));
+        }
+        return hash;
+    }
+
+    /**
+     * Returns sum of hashes of members of group {@param group} in {@param gene}.
+     */
+    long calcGroupHash(int[] gene, int group) {
+        long groupHash = 0;
+        for (int j = groupIndex[group]; j <= getLastMember(group, gene.length); j++) {
+            groupHash += mix(gene[j] + 1);
+        }
+        return groupHash;
+    }
+
+    /**
+     * Scrambles bits of {@param value} (SplitMix64 finaliser), so that sums of hashes rarely collide.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Calculates raw fitness components of {@param gene} from scratch, see {@link Gene#getComponents()}.
+     */
+    public double[] calcComponents(int[] gene) {
+        double[] components = new double[WeightProfile.COMPONENT_COUNT];
+        double[] groupChars = new double[Cohort.CHAR_COUNT];
+        for (int group = 0; group < groupIndex.length; group++) {
+            int firstMem = groupIndex[group];
+            int lastMem = getLastMember(group, gene.length);
+            for (int j = firstMem; j < lastMem; j++) {
+                for (int k = j + 1; k <= lastMem; k++) {
+                    components[WeightProfile.HETERO] += cohort.calcDifference(gene[j], gene[k]);
+                    components[WeightProfile.HOMO] += cohort.calcSimilarity(gene[j], gene[k]);
+                    components[WeightProfile.PREFERENCE] += constraints.calcPreferred(gene[j], gene[k]);
+                    components[WeightProfile.DISTRIBUTION] += constraints.calcDistribution(gene[j], gene[k]);
+                }
+            }
+            Arrays.fill(groupChars, 0);
+            for (int j = firstMem; j <= lastMem; j++) {
+                addChars(groupChars, 0, gene[j], 1);
+            }
+            components[WeightProfile.BALANCE] += calcBalance(groupChars, 0);
+        }
+        return components;
+    }
+}
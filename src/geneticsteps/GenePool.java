@@ -0,0 +1,56 @@
+package geneticsteps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores Genes that are no longer part of a Population, so that their arrays can be reused as child genes during Crossover.
+ * Once a generation has been replaced, the discarded Genes are recycled and no new Genes need to be allocated for Crossover.
+ * Acquiring and releasing Genes is thread-safe.
+ */
+public class GenePool {
+
+    private final GeneContext context;
+    private final ArrayList<Gene> free;
+    private int stamp = 0; // Incremented for every recycle, used to mark Genes that are still in use.
+
+    /**
+     * Creates an empty pool of Genes of {@param context}, with space reserved for {@param capacity} Genes.
+     */
+    public GenePool(GeneContext context, int capacity) {
+        this.context = context;
+        this.free = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Returns an unused Gene whose contents may be overwritten, creating a new one if the pool is empty.
+     */
+    public synchronized Gene acquire() {
+        return free.isEmpty() ? Gene.createBuffer(context) : free.remove(free.size() - 1);
+    }
+
+    /**
+     * Returns {@param gene} to the pool. Caller must ensure the Gene is no longer referenced anywhere else.
+     */
+    public synchronized void release(Gene gene) {
+        free.add(gene);
+    }
+
+    /**
+     * Releases every Gene in {@param oldGenes} that is not also contained in {@param newGenes}.
+     * Called when a Population replaces its genes with a new generation.
+     */
+    public synchronized void recycle(List<Gene> oldGenes, List<Gene> newGenes) {
+        stamp++;
+        for (Gene gene : newGenes) {
+            gene.mark = stamp;
+        }
+        for (Gene gene : oldGenes) {
+            if (gene.mark != stamp) {
+                // Mark released genes as well, so that duplicates in oldGenes are only released once.
+                gene.mark = stamp;
+                free.add(gene);
+            }
+        }
+    }
+}
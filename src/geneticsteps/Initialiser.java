@@ -0,0 +1,273 @@
+package geneticsteps;
+
+import model.Cohort;
+import model.ConstraintIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Creates the genes of an initial population, using a mix of construction strategies.
+ * Heuristic genes start far fitter than random permutations, so fewer generations are needed to reach the same fitness,
+ * while the random genes in the mix keep the population diverse enough for crossover to work with.
+ * Heuristic genes are constructed and scored in parallel, each from its own RNG split off in order, so results do not depend on the executor.
+ */
+public class Initialiser {
+
+    public enum Strategy {
+        RANDOM, // Random permutation of the cohort.
+        BALANCED, // Persons sorted along a random combination of characteristics, then dealt to groups back and forth (for fBal).
+        GREEDY, // Groups filled one at a time, each time with the sampled Person adding the least pair cost (for fMix, fPref and fDist).
+        CONSTRAINED // Aggregated Persons filling the same groups and distributed Persons spread over every group, then the rest as GREEDY.
+    }
+
+    public static int SAMPLE_SIZE = 32; // No. of unplaced Persons GREEDY considers for each place in a group.
+
+    private final double constrainedShare; // Share of genes created with each heuristic strategy, the remaining genes are random.
+    private final double greedyShare;
+    private final double balancedShare;
+
+    /**
+     * Creates an initialiser making {@param constrainedShare} of genes CONSTRAINED, {@param greedyShare} GREEDY,
+     * {@param balancedShare} BALANCED and the rest RANDOM.
+     */
+    public Initialiser(double constrainedShare, double greedyShare, double balancedShare) {
+        this.constrainedShare = Math.max(0, constrainedShare);
+        this.greedyShare = Math.max(0, greedyShare);
+        this.balancedShare = Math.max(0, balancedShare);
+    }
+
+    /**
+     * Creates an initialiser making only random genes.
+     */
+    public static Initialiser random() {
+        return new Initialiser(0, 0, 0);
+    }
+
+    /**
+     * Returns strategy of gene {@param index} of {@param count} genes, in the order CONSTRAINED, GREEDY, BALANCED, RANDOM.
+     */
+    public Strategy getStrategy(int index, int count) {
+        int constrained = (int) Math.min(count, Math.round(count * constrainedShare));
+        int greedy = (int) Math.min(count - constrained, Math.round(count * greedyShare));
+        int balanced = (int) Math.min(count - constrained - greedy, Math.round(count * balancedShare));
+        if (index < constrained) {
+            return Strategy.CONSTRAINED;
+        } else if (index < constrained + greedy) {
+            return Strategy.GREEDY;
+        }
+        return index < constrained + greedy + balanced ? Strategy.BALANCED : Strategy.RANDOM;
+    }
+
+    /**
+     * Creates {@param count} genes of {@param context}, using {@param random} to construct them.
+     * Heuristic genes each construct from a stream split from {@param random} in index order, so they are constructed along with
+     * scoring without depending on the executor. Random genes are cheap to construct and permute {@param random} itself, so a mix of
+     * only random genes consumes {@param random} the same way as {@link Gene#Gene(GeneContext, SplittableRandom)}.
+     * @param executor Executor to construct and score genes on, or null to do so on the calling thread.
+     */
+    public List<Gene> createGenes(GeneContext context, int count, SplittableRandom random, ExecutorService executor) {
+        int[][] arrays = new int[count][]; // Random genes, constructed up front.
+        SplittableRandom[] streams = new SplittableRandom[count]; // Streams of heuristic genes.
+        for (int i = 0; i < count; i++) {
+            Strategy strategy = getStrategy(i, count);
+            if (strategy == Strategy.RANDOM) {
+                arrays[i] = create(context, strategy, random);
+            } else {
+                streams[i] = random.split();
+            }
+        }
+
+        Gene[] genes = new Gene[count];
+        if (executor == null) {
+            for (int i = 0; i < count; i++) {
+                genes[i] = createGene(context, i, count, arrays[i], streams[i]);
+            }
+            return new ArrayList<>(Arrays.asList(genes));
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            tasks.add(() -> {
+                genes[index] = createGene(context, index, count, arrays[index], streams[index]);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating initial population", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to create initial population", e.getCause());
+        }
+        return new ArrayList<>(Arrays.asList(genes));
+    }
+
+    /**
+     * Scores gene {@param index} of {@param count} genes of {@param context}, which is {@param array} if already constructed,
+     * otherwise constructed with its strategy from {@param stream}.
+     */
+    private Gene createGene(GeneContext context, int index, int count, int[] array, SplittableRandom stream) {
+        return new Gene(context, array != null ? array : create(context, getStrategy(index, count), stream));
+    }
+
+    /**
+     * Creates an array of cohort indexes of {@param context} using {@param strategy}.
+     */
+    public static int[] create(GeneContext context, Strategy strategy, SplittableRandom random) {
+        switch (strategy) {
+            case BALANCED:
+                return createBalanced(context, random);
+            case GREEDY:
+                return createGreedy(context, random);
+            case CONSTRAINED:
+                return createConstrained(context, random);
+            default:
+                return context.getShuffledBase(random);
+        }
+    }
+
+    private static int[] createBalanced(GeneContext context, SplittableRandom random) {
+        int[] gene = new int[context.getGeneLength()];
+        int[] persons = context.getShuffledBase(random);
+        deal(context, persons, persons.length, new int[context.getGroupCount()], gene, random);
+        return gene;
+    }
+
+    private static int[] createGreedy(GeneContext context, SplittableRandom random) {
+        int[] gene = new int[context.getGeneLength()];
+        int[] persons = context.getShuffledBase(random);
+        fill(context, persons, persons.length, new int[context.getGroupCount()], gene, random);
+        return gene;
+    }
+
+    private static int[] createConstrained(GeneContext context, SplittableRandom random) {
+        ConstraintIndex constraints = context.getConstraints();
+        int groups = context.getGroupCount();
+        int[] gene = new int[context.getGeneLength()];
+        int[] filled = new int[groups]; // No. of Persons placed in each group so far.
+        int[] persons = context.getShuffledBase(random);
+
+        // Aggregated Persons fill whole groups, starting from a random group.
+        int group = random.nextInt(groups);
+        int remaining = 0;
+        for (int person : persons) {
+            if (constraints.isAggregated(person)) {
+                while (filled[group] == context.getGroupSize(group)) {
+                    group = (group + 1) % groups;
+                }
+                gene[context.groupIndex[group] + filled[group]++] = person;
+            } else {
+                persons[remaining++] = person;
+            }
+        }
+
+        // Distributed Persons are spread over groups in a random order, each group taking one before any takes another.
+        int[] order = shuffleGroups(groups, random);
+        int next = 0;
+        int others = 0;
+        for (int i = 0; i < remaining; i++) {
+            int person = persons[i];
+            if (!constraints.isDistributed(person)) {
+                persons[others++] = person;
+                continue;
+            }
+            while (filled[order[next % groups]] == context.getGroupSize(order[next % groups])) {
+                next++;
+            }
+            group = order[next++ % groups];
+            gene[context.groupIndex[group] + filled[group]++] = person;
+        }
+
+        fill(context, persons, others, filled, gene, random);
+        return gene;
+    }
+
+    /**
+     * Fills groups in a random order with the first {@param count} of {@param persons}, which must be shuffled.
+     * An empty group starts with the next Person, after which each place goes to whichever of SAMPLE_SIZE unplaced Persons
+     * adds the least pair cost to the group. Sampling keeps the cost linear in cohort size and leaves room for diversity.
+     * @param filled No. of Persons already placed in each group, updated as Persons are placed.
+     */
+    private static void fill(GeneContext context, int[] persons, int count, int[] filled, int[] gene, SplittableRandom random) {
+        int[] order = shuffleGroups(context.getGroupCount(), random);
+        int remaining = count; // No. of unplaced Persons, which are kept at the start of persons.
+        for (int group : order) {
+            int start = context.groupIndex[group];
+            while (filled[group] < context.getGroupSize(group)) {
+                int best = remaining - 1;
+                if (filled[group] > 0) {
+                    double bestCost = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < Math.min(SAMPLE_SIZE, remaining); i++) {
+                        int candidate = remaining <= SAMPLE_SIZE ? i : random.nextInt(remaining);
+                        double cost = 0;
+                        for (int j = start; j < start + filled[group]; j++) {
+                            cost += context.costMatrix.getCost(persons[candidate], gene[j]);
+                        }
+                        if (cost < bestCost) {
+                            best = candidate;
+                            bestCost = cost;
+                        }
+                    }
+                }
+                gene[start + filled[group]++] = persons[best];
+                persons[best] = persons[--remaining];
+            }
+        }
+    }
+
+    /**
+     * Sorts the first {@param count} of {@param persons} along a random combination of characteristics, then deals them to groups
+     * in a random order, forwards and backwards in turn, so every group gets Persons from across the range of that combination.
+     * @param filled No. of Persons already placed in each group, updated as Persons are placed.
+     */
+    private static void deal(GeneContext context, int[] persons, int count, int[] filled, int[] gene, SplittableRandom random) {
+        double[] direction = new double[Cohort.CHAR_COUNT];
+        for (int k = 0; k < direction.length; k++) {
+            direction[k] = random.nextDouble() * 2 - 1;
+        }
+        double[] keys = new double[context.getGeneLength()];
+        for (int i = 0; i < count; i++) {
+            int row = persons[i] * Cohort.CHAR_COUNT;
+            for (int k = 0; k < direction.length; k++) {
+                keys[persons[i]] += direction[k] * context.scaledChars[row + k];
+            }
+        }
+        Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = persons[i];
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(keys[a], keys[b]));
+
+        int groups = context.getGroupCount();
+        int[] order = shuffleGroups(groups, random);
+        int placed = 0;
+        for (int round = 0; placed < count; round++) {
+            for (int i = 0; i < groups && placed < count; i++) {
+                int group = order[round % 2 == 0 ? i : groups - 1 - i];
+                if (filled[group] < context.getGroupSize(group)) {
+                    gene[context.groupIndex[group] + filled[group]++] = sorted[placed++];
+                }
+            }
+        }
+    }
+
+    private static int[] shuffleGroups(int groups, SplittableRandom random) {
+        int[] order = new int[groups];
+        for (int i = 0; i < groups; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+}
@@ -1,25 +1,54 @@
 package geneticsteps;
 
 import model.Person;
+import model.WeightProfile;
 import utils.GeneComparator;
+import utils.LongHashSet;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
 
 public class Population {
 
+    private static final GeneComparator comparator = new GeneComparator();
+
     private ArrayList<Gene> genes;
     private final int count;
+    private final GeneContext context; // Cohort every gene in population belongs to.
+    private final GenePool pool; // Genes dropped from previous generations, reused for Crossover.
+
+    // Updated whenever genes are replaced, genes in the population must not be modified in place.
+    private Gene fittest; // Fittest gene in population.
+    private double totalFitness; // Sum of fitness of every gene in population.
 
     /**
-     * Creates a population containing {@param size} genes, each of length {@param geneLength}.
+     * Creates a population containing {@param size} random genes of {@param context}.
      */
-    private Population(int geneLength, int size) {
+    private Population(GeneContext context, int size, SplittableRandom random) {
         this.genes = new ArrayList<>(size);
         this.count = size;
+        this.context = context;
+        this.pool = new GenePool(context, size);
         for (int i = 0; i < size; i++) {
-            genes.add(new Gene(geneLength));
+            genes.add(new Gene(context, random));
         }
+        updateStatistics();
+    }
+
+    /**
+     * Creates a population of {@param genes}, all of which must belong to {@param context}.
+     */
+    private Population(GeneContext context, List<Gene> genes) {
+        this.genes = new ArrayList<>(genes);
+        this.count = genes.size();
+        this.context = context;
+        this.pool = new GenePool(context, count);
+        updateStatistics();
     }
 
     /**
@@ -32,15 +61,83 @@ public class Population {
      * @param distribute Array of Ids of Persons to separate.
      */
     public static Population initialise(int geneLength, int geneCount, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute) {
-        Gene.setBaseInfo(geneLength, groupNo, customGene, aggregate, distribute);
-        return new Population(geneLength, geneCount);
+        return new Population(Gene.setBaseInfo(geneLength, groupNo, customGene, aggregate, distribute), geneCount, new SplittableRandom());
+    }
+
+    /**
+     * Same as {@link #initialise(int, int, int, List, int[], int[])}, but uses {@param random} to permute genes so that results can be reproduced.
+     */
+    public static Population initialise(int geneLength, int geneCount, int groupNo, List<Person> customGene, int[] aggregate, int[] distribute, SplittableRandom random) {
+        return new Population(Gene.setBaseInfo(geneLength, groupNo, customGene, aggregate, distribute), geneCount, random);
+    }
+
+    /**
+     * Generates another population by randomly permuting the base gene set by a previous call to initialise.
+     * Used when several populations evolve on the same cohort, e.g. islands.
+     */
+    public static Population generate(int geneLength, int geneCount, SplittableRandom random) {
+        return new Population(Gene.getDefaultContext(), geneCount, random);
+    }
+
+    /**
+     * Generates a population of {@param geneCount} random genes of {@param context}, using {@param random} to permute its cohort.
+     * Unlike {@link #initialise}, does not change the default context, so populations of several cohorts can be created side by side.
+     */
+    public static Population generate(GeneContext context, int geneCount, SplittableRandom random) {
+        return new Population(context, geneCount, random);
+    }
+
+    /**
+     * Generates a population of {@param geneCount} genes of {@param context} created by {@param initialiser} using {@param random}.
+     * @param executor Executor to score genes on, or null to score them on the calling thread.
+     */
+    public static Population generate(GeneContext context, int geneCount, Initialiser initialiser, SplittableRandom random, ExecutorService executor) {
+        return new Population(context, initialiser.createGenes(context, geneCount, random, executor));
+    }
+
+    /**
+     * Creates a population of {@param genes} of {@param context}, e.g. genes seeded from a previous result rather than random genes.
+     */
+    public static Population of(GeneContext context, List<Gene> genes) {
+        return new Population(context, genes);
+    }
+
+    /**
+     * Returns context of the cohort every gene in population belongs to.
+     */
+    public GeneContext getContext() {
+        return context;
     }
 
     /**
      * Returns total fitness of population.
      */
     public double getTotalFitness() {
-        return genes.stream().map(Gene::getFitness).reduce(0.0, Double::sum);
+        return this.totalFitness;
+    }
+
+    /**
+     * Returns fittest gene in population.
+     */
+    public Gene getFittestGene() {
+        return this.fittest;
+    }
+
+    /**
+     * Recalculates fittest gene and total fitness of population in a single pass.
+     */
+    private void updateStatistics() {
+        Gene best = genes.get(0);
+        double total = 0;
+        for (int i = 0; i < genes.size(); i++) {
+            Gene gene = genes.get(i);
+            total += gene.getFitness();
+            if (gene.getFitness() > best.getFitness()) {
+                best = gene;
+            }
+        }
+        this.fittest = best;
+        this.totalFitness = total;
     }
 
     /**
@@ -51,31 +148,164 @@ public class Population {
     }
 
     /**
-     * Returns {@param no} fittest genes from the current population as an ArrayList. Modifies the original list.
+     * Returns {@param no} fittest genes from the current population as an ArrayList, in descending order of fitness.
+     * Modifies the order of the original list.
      */
     public ArrayList<Gene> getFittestGenes(int no) {
-        genes.sort(new GeneComparator());
-        return new ArrayList<>(genes.subList(0, no));
+        if (no == 1) {
+            ArrayList<Gene> result = new ArrayList<>(1);
+            result.add(fittest);
+            return result;
+        }
+        selectFittest(0, genes.size(), no);
+        ArrayList<Gene> result = new ArrayList<>(genes.subList(0, no));
+        result.sort(comparator);
+        return result;
+    }
+
+    /**
+     * Returns every gene of the population in descending order of fitness under {@param profile}, without evaluating any gene again.
+     * Does not modify the order of the original list.
+     * @throws IllegalArgumentException If {@param profile} weighs characteristics differently, see {@link Gene#getFitness(WeightProfile)}.
+     */
+    public ArrayList<Gene> rankBy(WeightProfile profile) {
+        double[] fitness = new double[genes.size()];
+        for (int i = 0; i < fitness.length; i++) {
+            fitness[i] = genes.get(i).getFitness(profile);
+        }
+        Integer[] order = new Integer[fitness.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> fitness[i]).reversed());
+        ArrayList<Gene> ranked = new ArrayList<>(order.length);
+        for (int i : order) {
+            ranked.add(genes.get(i));
+        }
+        return ranked;
+    }
+
+    /**
+     * Same as {@link #getFittestGenes(int)}, but genes forming the same groups (same canonical hash) are only returned once.
+     * Duplicates are only returned if the population has fewer than {@param no} distinct groupings.
+     */
+    public ArrayList<Gene> getFittestDistinctGenes(int no) {
+        // Move first gene of each distinct grouping to the front of the list, duplicates to the back.
+        LongHashSet hashes = new LongHashSet(genes.size());
+        int distinct = 0;
+        for (int i = 0; i < genes.size(); i++) {
+            if (hashes.add(genes.get(i).getCanonicalHash())) {
+                Collections.swap(genes, distinct++, i);
+            }
+        }
+
+        selectFittest(0, distinct, Math.min(no, distinct));
+        ArrayList<Gene> result = new ArrayList<>(genes.subList(0, Math.min(no, distinct)));
+        if (no > distinct) {
+            selectFittest(distinct, genes.size(), no - distinct);
+            result.addAll(genes.subList(distinct, no));
+        }
+        result.sort(comparator);
+        return result;
+    }
+
+    /**
+     * Partially orders genes from index {@param from} (inclusive) to {@param to} (exclusive) using quickselect, so that
+     * the {@param no} fittest genes in that range occupy its first {@param no} positions.
+     * Runs in linear time on average, instead of sorting the entire population.
+     */
+    private void selectFittest(int from, int to, int no) {
+        int target = from + no - 1;
+        int left = from;
+        int right = to - 1;
+        while (left < right && target >= left && target <= right) {
+            // Median of 3 as pivot, avoids worst case on already ordered populations without needing an RNG.
+            int middle = (left + right) >>> 1;
+            double a = genes.get(left).getFitness();
+            double b = genes.get(middle).getFitness();
+            double c = genes.get(right).getFitness();
+            double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+            // 3 way partition, fitter genes to the left and genes equal to pivot in the middle.
+            // Duplicate genes are common, so equal genes are grouped to avoid degrading to quadratic time.
+            int lower = left;
+            int i = left;
+            int upper = right;
+            while (i <= upper) {
+                double fitness = genes.get(i).getFitness();
+                if (fitness > pivot) {
+                    Collections.swap(genes, lower++, i++);
+                } else if (fitness < pivot) {
+                    Collections.swap(genes, i, upper--);
+                } else {
+                    i++;
+                }
+            }
+
+            if (target < lower) {
+                right = lower - 1;
+            } else if (target > upper) {
+                left = upper + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the pool of Genes that are no longer part of the population, to be reused for Crossover.
+     */
+    public GenePool getGenePool() {
+        return this.pool;
     }
 
     /**
      * Updates population with new set of genes (for new generations).
+     * Genes from the previous generation that are not part of the new set are released to the GenePool and may be overwritten.
      */
     public void updateGenes(ArrayList<Gene> genes) {
         if (genes.size() == count) {
+            pool.recycle(this.genes, genes);
             this.genes = genes;
+            updateStatistics();
+        }
+    }
+
+    /**
+     * Replaces the least fit genes of the population with {@param replacements} (e.g. migrants from another population).
+     * Replaced genes are released to the GenePool, so {@param replacements} must not be referenced by any other population.
+     */
+    public void replaceWeakestGenes(List<Gene> replacements) {
+        int replaced = Math.min(replacements.size(), count);
+        if (replaced < count) {
+            selectFittest(0, count, count - replaced);
+        }
+        ArrayList<Gene> updated = new ArrayList<>(genes);
+        for (int i = 0; i < replaced; i++) {
+            updated.set(count - 1 - i, replacements.get(i));
         }
+        updateGenes(updated);
     }
 
     /**
      * Prints every gene to the console.
      */
     public void printPopulation() {
+        StringBuilder out = new StringBuilder();
+        appendTo(out);
+        System.out.print(out);
+    }
+
+    /**
+     * Appends every gene and its fitness to {@param out}, followed by total fitness of population.
+     */
+    public void appendTo(StringBuilder out) {
         for (int i = 0; i < count; i++) {
             Gene curr = genes.get(i);
-            System.out.println((i + 1) + ") " + curr.toString());
-            System.out.println("Fitness = " + curr.getFitness());
+            out.append(i + 1).append(") ");
+            curr.appendTo(out);
+            out.append('\n').append("Fitness = ").append(curr.getFitness()).append('\n');
         }
-        System.out.print("Total Fitness = " + getTotalFitness() + "\n");
+        out.append("Total Fitness = ").append(getTotalFitness()).append('\n');
     }
 }
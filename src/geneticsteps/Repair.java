@@ -0,0 +1,378 @@
+package geneticsteps;
+
+import model.ConstraintIndex;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Enforces aggregated and distributed Persons as hard constraints rather than the soft fDist penalty.
+ * A gene is feasible when every aggregated Person is in one of as few groups as can hold them all, and no group holds more
+ * distributed Persons than needed for such a gene to exist (1 per group when there are no more of them than groups and no aggregated Persons).
+ * Genes are repaired by first planning how many Persons of each kind every group should hold, keeping Persons where they are as far
+ * as the constraints allow, then swapping misplaced Persons into groups that need their kind. Repair always ends with a feasible gene,
+ * is deterministic and only depends on the gene.
+ */
+public class Repair {
+
+    private static final int AGGREGATED = 1;
+    private static final int DISTRIBUTED = 2;
+    private static final int BOTH = AGGREGATED | DISTRIBUTED;
+    private static final int KINDS = 4; // Kinds of Persons, indexed by their AGGREGATED and DISTRIBUTED bits.
+
+    private final GeneContext context;
+    private final int[] kind; // AGGREGATED and/or DISTRIBUTED bits of each cohort index.
+    private final int[] kindCount; // No. of Persons of each kind.
+    private final int aggregatedCount;
+    private final int distributedCount;
+    private final int aggregateGroups; // Min no. of groups that can hold every aggregated Person.
+    private final int requiredLarger; // Min no. of larger groups among the aggregate groups for a feasible gene to exist.
+    private final int maxDistributed; // Max no. of distributed Persons in a single group.
+
+    /**
+     * Creates repair operator of {@param context}, whose group layout must already be set up.
+     */
+    Repair(GeneContext context) {
+        this.context = context;
+        ConstraintIndex constraints = context.getConstraints();
+        int length = context.getGeneLength();
+        int groups = context.getGroupCount();
+        this.kind = new int[length];
+        this.kindCount = new int[KINDS];
+        for (int i = 0; i < length; i++) {
+            kind[i] = (constraints.isAggregated(i) ? AGGREGATED : 0) | (constraints.isDistributed(i) ? DISTRIBUTED : 0);
+            kindCount[kind[i]]++;
+        }
+        this.aggregatedCount = kindCount[AGGREGATED] + kindCount[BOTH];
+        this.distributedCount = kindCount[DISTRIBUTED] + kindCount[BOTH];
+
+        Integer[] bySize = new Integer[groups];
+        for (int i = 0; i < groups; i++) {
+            bySize[i] = i;
+        }
+        Arrays.sort(bySize, Comparator.comparingInt((Integer group) -> -context.getGroupSize(group)));
+        int unplaced = aggregatedCount;
+        int used = 0;
+        for (int group : bySize) {
+            if (unplaced > 0) {
+                unplaced -= Math.min(unplaced, context.getGroupSize(group));
+                used++;
+            }
+        }
+        this.aggregateGroups = used;
+
+        // Take the lowest limit any gene can meet, and the fewest larger aggregate groups it can be met with. Aggregate groups made
+        // only of larger groups always meet a limit of the larger group size, so the search ends there at the latest.
+        int smallest = context.getGroupSize(0); // Groups are laid out smallest first, sizes differ by at most 1.
+        int largest = context.getGroupSize(groups - 1);
+        int largerGroups = 0;
+        for (int group = 0; group < groups; group++) {
+            largerGroups += context.getGroupSize(group) == largest ? 1 : 0;
+        }
+        int minLarger = Math.max(0, aggregateGroups - (groups - largerGroups));
+        int maxLarger = Math.min(largerGroups, aggregateGroups);
+        int limit = Math.max(1, (distributedCount + groups - 1) / groups);
+        int larger = minLarger;
+        while (limit < largest && !isSolvable(limit, larger, smallest, largest, largerGroups, groups)) {
+            larger++;
+            if (larger > maxLarger) {
+                larger = minLarger;
+                limit++;
+            }
+        }
+        while (larger < maxLarger && !isSolvable(limit, larger, smallest, largest, largerGroups, groups)) {
+            larger++;
+        }
+        this.maxDistributed = limit;
+        this.requiredLarger = larger;
+    }
+
+    /**
+     * Returns whether a gene can hold no more than {@param limit} distributed Persons in any group, with {@param larger} of its aggregate
+     * groups sized {@param largest} and the others {@param smallest}, out of {@param largerGroups} larger ones of {@param groups} groups.
+     * Only aggregate groups can hold aggregated Persons who are also distributed. Aggregated Persons who are not first fill the space of
+     * aggregate groups beyond the limit, and each one placed beyond that takes the place of a distributed Person.
+     */
+    private boolean isSolvable(int limit, int larger, int smallest, int largest, int largerGroups, int groups) {
+        int smaller = aggregateGroups - larger;
+        if (larger * largest + smaller * smallest < aggregatedCount) {
+            return false;
+        }
+        int slack = larger * Math.max(0, largest - limit) + smaller * Math.max(0, smallest - limit);
+        int aggregateCapacity = larger * Math.min(limit, largest) + smaller * Math.min(limit, smallest)
+                - Math.max(0, kindCount[AGGREGATED] - slack);
+        int otherCapacity = (largerGroups - larger) * Math.min(limit, largest) + (groups - largerGroups - smaller) * Math.min(limit, smallest);
+        return aggregateCapacity >= kindCount[BOTH] && aggregateCapacity + otherCapacity >= distributedCount;
+    }
+
+    /**
+     * Returns whether Persons at cohort indexes {@param first} and {@param second} can be swapped between any 2 groups without
+     * affecting feasibility, which is the case when both are aggregated, distributed or neither in the same way.
+     */
+    public boolean isInterchangeable(int first, int second) {
+        return kind[first] == kind[second];
+    }
+
+    /**
+     * Repairs {@param gene} (an array of cohort indexes) in place.
+     * @return No. of swaps applied, 0 if the gene was already feasible.
+     */
+    public int repair(int[] gene) {
+        if (aggregatedCount == 0 && distributedCount == 0) {
+            return 0;
+        }
+        int[][] counts = count(gene);
+        if (isFeasible(counts)) {
+            return 0;
+        }
+        int[][] wanted = plan(counts, chooseAggregateGroups(counts));
+        int swaps = 0;
+        for (int i = 0; i < gene.length; i++) {
+            // A Person swapped into a group that has enough of their kind is moved on from there, until they reach a group needing them.
+            int index = i;
+            while (counts[context.groupOf[index]][kind[gene[index]]] > wanted[context.groupOf[index]][kind[gene[index]]]) {
+                int partner = findPartner(gene, index, counts, wanted);
+                if (partner < 0) {
+                    break;
+                }
+                swaps += swap(gene, index, partner, counts);
+                index = partner;
+            }
+        }
+        return swaps;
+    }
+
+    /**
+     * Returns no. of Persons of {@param gene} placed against the constraints, 0 if it is feasible: aggregated Persons outside of the
+     * groups {@link #repair} would gather them in, and distributed Persons beyond the max. of their group.
+     */
+    public int countViolations(int[] gene) {
+        if (aggregatedCount == 0 && distributedCount == 0) {
+            return 0;
+        }
+        int[][] counts = count(gene);
+        if (isFeasible(counts)) {
+            return 0;
+        }
+        boolean[] target = chooseAggregateGroups(counts);
+        int violations = 0;
+        for (int group = 0; group < counts.length; group++) {
+            violations += (target[group] ? 0 : countAggregated(counts[group])) + Math.max(0, countDistributed(counts[group]) - maxDistributed);
+        }
+        return violations;
+    }
+
+    /**
+     * Returns no. of Persons of each kind in each group of {@param gene}.
+     */
+    private int[][] count(int[] gene) {
+        int[][] counts = new int[context.getGroupCount()][KINDS];
+        for (int i = 0; i < gene.length; i++) {
+            counts[context.groupOf[i]][kind[gene[i]]]++;
+        }
+        return counts;
+    }
+
+    private static int countAggregated(int[] groupCounts) {
+        return groupCounts[AGGREGATED] + groupCounts[BOTH];
+    }
+
+    private static int countDistributed(int[] groupCounts) {
+        return groupCounts[DISTRIBUTED] + groupCounts[BOTH];
+    }
+
+    /**
+     * Returns whether a gene with {@param counts} Persons of each kind in each group is feasible, which takes no more than counting:
+     * aggregated Persons in no more groups than the min. needed to hold them is only possible if those groups can hold them.
+     */
+    private boolean isFeasible(int[][] counts) {
+        int used = 0;
+        for (int[] groupCounts : counts) {
+            if (countDistributed(groupCounts) > maxDistributed) {
+                return false;
+            }
+            used += countAggregated(groupCounts) > 0 ? 1 : 0;
+        }
+        return used <= aggregateGroups;
+    }
+
+    /**
+     * Marks the groups that aggregated Persons should be in: the min. no. of groups that can hold them all, choosing those already
+     * holding the most of them (larger groups first) among {@param counts}. Only as many larger groups are required as a feasible gene needs.
+     */
+    private boolean[] chooseAggregateGroups(int[][] counts) {
+        int groups = counts.length;
+        int[] aggregated = new int[groups];
+        for (int group = 0; group < groups; group++) {
+            aggregated[group] = countAggregated(counts[group]);
+        }
+        boolean[] target = new boolean[groups];
+        int largest = context.getGroupSize(groups - 1);
+        int smallest = context.getGroupSize(0);
+        int chosen = markGroups(aggregated, target, largest, largest, requiredLarger);
+        markGroups(aggregated, target, largest, smallest, aggregateGroups - chosen);
+        return target;
+    }
+
+    /**
+     * Marks up to {@param count} more groups sized from {@param minSize} to {@param maxSize} in {@param target}, those holding the most
+     * aggregated Persons first, then larger groups first. Scans every group once per possible no. of aggregated Persons, so avoids sorting.
+     * @return No. of groups marked.
+     */
+    private int markGroups(int[] aggregated, boolean[] target, int maxSize, int minSize, int count) {
+        int marked = 0;
+        for (int held = maxSize; held >= 0 && marked < count; held--) {
+            for (int size = maxSize; size >= minSize && marked < count; size--) {
+                for (int group = 0; group < aggregated.length && marked < count; group++) {
+                    if (!target[group] && aggregated[group] == held && context.getGroupSize(group) == size) {
+                        target[group] = true;
+                        marked++;
+                    }
+                }
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * Returns no. of Persons of each kind every group should hold to make a gene with {@param counts} feasible, with aggregated Persons
+     * in the {@param target} groups. Each group keeps as many of the Persons it holds as the constraints allow.
+     */
+    private int[][] plan(int[][] counts, boolean[] target) {
+        int groups = counts.length;
+        int[][] wanted = new int[groups][KINDS];
+
+        // Aggregated Persons who are not distributed fill the space of target groups beyond the distributed limit first.
+        int unplaced = 0;
+        for (int group = 0; group < groups; group++) {
+            if (target[group]) {
+                wanted[group][AGGREGATED] = counts[group][AGGREGATED];
+            } else {
+                unplaced += counts[group][AGGREGATED];
+            }
+        }
+        for (int group = 0; group < groups && unplaced > 0; group++) {
+            if (target[group]) {
+                int placed = Math.max(0, Math.min(unplaced, context.getGroupSize(group) - maxDistributed - wanted[group][AGGREGATED]));
+                wanted[group][AGGREGATED] += placed;
+                unplaced -= placed;
+            }
+        }
+        for (int group = 0; group < groups && unplaced > 0; group++) {
+            if (target[group]) {
+                int placed = Math.min(unplaced, context.getGroupSize(group) - wanted[group][AGGREGATED]);
+                wanted[group][AGGREGATED] += placed;
+                unplaced -= placed;
+            }
+        }
+
+        // Distributed Persons can only take the space left below the limit, so aggregated Persons are moved from groups with less space
+        // than the limit into groups with more until target groups have room for the aggregated distributed Persons, and the others
+        // have room for every distributed Person.
+        int[] room = new int[groups]; // No. of distributed Persons each group has room for.
+        int targetRoom = 0;
+        int otherRoom = 0;
+        for (int group = 0; group < groups; group++) {
+            room[group] = Math.min(maxDistributed, context.getGroupSize(group) - wanted[group][AGGREGATED]);
+            targetRoom += target[group] ? room[group] : 0;
+            otherRoom += target[group] ? 0 : room[group];
+        }
+        int needed = Math.max(kindCount[BOTH], distributedCount - otherRoom);
+        for (int from = 0, to = 0; targetRoom < needed; targetRoom++) {
+            while (from < groups && !(target[from] && wanted[from][AGGREGATED] > Math.max(0, context.getGroupSize(from) - maxDistributed))) {
+                from++;
+            }
+            while (to < groups && !(target[to] && wanted[to][AGGREGATED] < context.getGroupSize(to) - maxDistributed)) {
+                to++;
+            }
+            if (from == groups || to == groups) {
+                break;
+            }
+            wanted[from][AGGREGATED]--;
+            wanted[to][AGGREGATED]++;
+            room[from]++;
+        }
+
+        // Aggregated distributed Persons are spread over target groups, then distributed Persons over all groups, within their room.
+        place(counts, wanted, room, target, BOTH);
+        place(counts, wanted, room, null, DISTRIBUTED);
+        for (int group = 0; group < groups; group++) {
+            wanted[group][0] = context.getGroupSize(group) - wanted[group][AGGREGATED] - wanted[group][BOTH] - wanted[group][DISTRIBUTED]; // Neither kind.
+        }
+        return wanted;
+    }
+
+    /**
+     * Sets no. of distributed Persons of {@param personKind} each group should hold in {@param wanted}, within the {@param room} of each
+     * group (which is reduced accordingly) and only in {@param target} groups unless it is null. Groups keep those they hold in
+     * {@param counts} first, the rest are placed in the groups with the most room left.
+     */
+    private void place(int[][] counts, int[][] wanted, int[] room, boolean[] target, int personKind) {
+        int unplaced = kindCount[personKind];
+        for (int group = 0; group < counts.length; group++) {
+            if (target == null || target[group]) {
+                wanted[group][personKind] = Math.min(counts[group][personKind], room[group]);
+                room[group] -= wanted[group][personKind];
+                unplaced -= wanted[group][personKind];
+            }
+        }
+        for (; unplaced > 0; unplaced--) {
+            int best = -1;
+            for (int group = 0; group < counts.length; group++) {
+                if ((target == null || target[group]) && room[group] > 0 && (best < 0 || room[group] > room[best])) {
+                    best = group;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            wanted[best][personKind]++;
+            room[best]--;
+        }
+    }
+
+    /**
+     * Returns index of a Person to swap with the Person at {@param index}, whose group holds more of their kind than {@param wanted},
+     * or -1 if there is none. The partner is of a kind the group of {@param index} needs more of, in a group holding more of that kind
+     * than wanted. Groups are searched in order starting after the group of {@param index}, a partner whose group needs the kind of
+     * {@param index} is preferred, so the swap places both Persons.
+     */
+    private int findPartner(int[] gene, int index, int[][] counts, int[][] wanted) {
+        int groups = context.getGroupCount();
+        int own = context.groupOf[index];
+        int moving = kind[gene[index]];
+        int fallback = -1;
+        for (int step = 1; step < groups; step++) {
+            int group = (own + step) % groups;
+            boolean needsMoving = counts[group][moving] < wanted[group][moving];
+            for (int j = context.groupIndex[group]; j <= context.getLastMember(group, gene.length); j++) {
+                int other = kind[gene[j]];
+                if (counts[own][other] >= wanted[own][other] || counts[group][other] <= wanted[group][other]) {
+                    continue;
+                }
+                if (needsMoving) {
+                    return j;
+                }
+                if (fallback < 0) {
+                    fallback = j;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    private int swap(int[] gene, int first, int second, int[][] counts) {
+        int firstGroup = context.groupOf[first];
+        int secondGroup = context.groupOf[second];
+        int firstKind = kind[gene[first]];
+        int secondKind = kind[gene[second]];
+        counts[firstGroup][firstKind]--;
+        counts[firstGroup][secondKind]++;
+        counts[secondGroup][secondKind]--;
+        counts[secondGroup][firstKind]++;
+        int temp = gene[first];
+        gene[first] = gene[second];
+        gene[second] = temp;
+        return 1;
+    }
+}
@@ -0,0 +1,255 @@
+package geneticsteps;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of scores, each made up of a fixed no. of values and keyed by a 64 bit hash.
+ * Used to cache fitness of whole genes by canonical hash (see {@link Gene#getCanonicalHash()}), and partial scores of
+ * single groups by the hash of their member set, so that genes or groups seen before do not need to be rescored.
+ * Entries are stored in small sets of slots, and are evicted using the CLOCK algorithm within each set.
+ * Safe to use from multiple threads, each set is guarded by one of several locks.
+ */
+public class ScoreCache {
+
+    public static int FITNESS_CAPACITY = 1 << 16; // Max no. of gene fitness values cached per cohort, 0 to disable caching.
+    public static int GROUP_CAPACITY = 1 << 16; // Max no. of group scores cached per cohort, 0 to disable caching.
+
+    private static final int WAYS = 4; // No. of slots in each set.
+    private static final int STRIPES = 64; // No. of locks shared between sets.
+
+    private final int width; // No. of values in each score.
+    private final long[] keys;
+    private final double[] values; // Values of each slot, width values per slot.
+    private final boolean[] occupied;
+    private final boolean[] referenced; // CLOCK reference bit of each slot, set whenever the slot is read.
+    private final int[] hands; // CLOCK hand of each set.
+    private final int setMask;
+    private final Object[] locks;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache holding up to {@param capacity} scores (rounded down to a power of 2) of {@param width} values each.
+     */
+    public ScoreCache(int capacity, int width) {
+        int sets = Math.max(1, Integer.highestOneBit(Math.max(capacity, WAYS)) / WAYS);
+        this.width = width;
+        this.keys = new long[sets * WAYS];
+        this.values = new double[sets * WAYS * width];
+        this.occupied = new boolean[sets * WAYS];
+        this.referenced = new boolean[sets * WAYS];
+        this.hands = new int[sets];
+        this.setMask = sets - 1;
+        this.locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns cached score of {@param key} for a cache of width 1, or NaN if it is not cached.
+     */
+    public double get(long key) {
+        int set = getSet(key);
+        int first = set * WAYS;
+        synchronized (locks[set & (STRIPES - 1)]) {
+            for (int i = first; i < first + WAYS; i++) {
+                if (occupied[i] && keys[i] == key) {
+                    referenced[i] = true;
+                    hits.increment();
+                    return values[i];
+                }
+            }
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * Copies cached score of {@param key} into {@param target} starting at {@param offset}.
+     * @return True if {@param key} was cached, otherwise {@param target} is left unchanged.
+     */
+    public boolean get(long key, double[] target, int offset) {
+        int set = getSet(key);
+        int first = set * WAYS;
+        synchronized (locks[set & (STRIPES - 1)]) {
+            for (int i = first; i < first + WAYS; i++) {
+                if (occupied[i] && keys[i] == key) {
+                    referenced[i] = true;
+                    System.arraycopy(values, i * width, target, offset, width);
+                    hits.increment();
+                    return true;
+                }
+            }
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Caches {@param value} for {@param key} in a cache of width 1, see {@link #put(long, double[], int)}.
+     */
+    public void put(long key, double value) {
+        int set = getSet(key);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int slot = claimSlot(set, key);
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Caches the score in {@param source} starting at {@param offset} for {@param key}, evicting an entry of the same set if it is full.
+     */
+    public void put(long key, double[] source, int offset) {
+        int set = getSet(key);
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int slot = claimSlot(set, key);
+            System.arraycopy(source, offset, values, slot * width, width);
+        }
+    }
+
+    /**
+     * Returns slot of {@param set} to store {@param key} in, must be called while holding the lock of the set.
+     */
+    private int claimSlot(int set, long key) {
+        int first = set * WAYS;
+        for (int i = first; i < first + WAYS; i++) {
+            if (!occupied[i] || keys[i] == key) {
+                return claim(i, key);
+            }
+        }
+
+        // Set is full, advance hand until a slot that has not been read since the last pass is found.
+        int hand = hands[set];
+        while (referenced[first + hand]) {
+            referenced[first + hand] = false;
+            hand = (hand + 1) % WAYS;
+        }
+        hands[set] = (hand + 1) % WAYS;
+        return claim(first + hand, key);
+    }
+
+    private int claim(int slot, long key) {
+        keys[slot] = key;
+        occupied[slot] = true;
+        referenced[slot] = false;
+        return slot;
+    }
+
+    /**
+     * Returns the set that {@param key} is stored in, mixing in the upper half of the key.
+     */
+    private int getSet(long key) {
+        return (int) (key ^ (key >>> 32)) & setMask;
+    }
+
+    /**
+     * Returns a copy of every entry and the eviction state of the cache, so that it can be restored to behave exactly the same.
+     * Must not be called while other threads use the cache. Hit and miss counts are not copied.
+     */
+    public ScoreCache copy() {
+        ScoreCache copy = new ScoreCache(keys.length, width);
+        copy.restore(this);
+        return copy;
+    }
+
+    /**
+     * Replaces every entry and the eviction state of the cache with those of {@param source}, which must have the same no. of slots and width.
+     * Must not be called while other threads use the cache.
+     */
+    public void restore(ScoreCache source) {
+        if (source.keys.length != keys.length || source.width != width) {
+            throw new IllegalArgumentException("Cannot restore cache of " + source.keys.length + " slots of width " + source.width
+                    + " into cache of " + keys.length + " slots of width " + width);
+        }
+        System.arraycopy(source.keys, 0, keys, 0, keys.length);
+        System.arraycopy(source.values, 0, values, 0, values.length);
+        System.arraycopy(source.occupied, 0, occupied, 0, occupied.length);
+        System.arraycopy(source.referenced, 0, referenced, 0, referenced.length);
+        System.arraycopy(source.hands, 0, hands, 0, hands.length);
+    }
+
+    /**
+     * Writes entries and eviction state of the cache to {@param out}, in binary. Only occupied slots are written.
+     * Must not be called while other threads use the cache.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(keys.length);
+        out.writeInt(width);
+        int count = 0;
+        for (boolean slot : occupied) {
+            count += slot ? 1 : 0;
+        }
+        out.writeInt(count);
+        for (int i = 0; i < keys.length; i++) {
+            if (occupied[i]) {
+                out.writeInt(i);
+                out.writeLong(keys[i]);
+                out.writeBoolean(referenced[i]);
+                for (int j = i * width; j < (i + 1) * width; j++) {
+                    out.writeDouble(values[j]);
+                }
+            }
+        }
+        for (int hand : hands) {
+            out.writeByte(hand);
+        }
+    }
+
+    /**
+     * Reads cache written by {@link #write(DataOutput)} from {@param in}.
+     */
+    public static ScoreCache read(DataInput in) throws IOException {
+        int slots = in.readInt();
+        int width = in.readInt();
+        if (slots < WAYS || Integer.bitCount(slots) != 1 || width < 1) {
+            throw new IOException("Invalid cache of " + slots + " slots of width " + width);
+        }
+        ScoreCache cache = new ScoreCache(slots, width);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int slot = in.readInt();
+            if (slot < 0 || slot >= slots) {
+                throw new IOException("Invalid cache slot " + slot);
+            }
+            cache.occupied[slot] = true;
+            cache.keys[slot] = in.readLong();
+            cache.referenced[slot] = in.readBoolean();
+            for (int j = slot * width; j < (slot + 1) * width; j++) {
+                cache.values[j] = in.readDouble();
+            }
+        }
+        for (int i = 0; i < cache.hands.length; i++) {
+            cache.hands[i] = in.readByte();
+        }
+        return cache;
+    }
+
+    /**
+     * Returns no. of lookups that found a cached score.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns no. of lookups that did not find a cached score.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns ratio of lookups that found a cached score, 0 if there have been none.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
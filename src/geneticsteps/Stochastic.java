@@ -1,71 +1,126 @@
-package geneticsteps;
-
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
-public class Stochastic {
-
-    /**
-     * Performs SUS on {@param population} to select {@param totalSelections} Genes.
-     */
-    public static List<Gene> selectGenes(Population population, int totalSelections) {
-        List<Gene> selectedGenes = new ArrayList<>();
-        double totalFitness = population.getTotalFitness();
-        double spacing = totalFitness / totalSelections;
-        double pointer = Math.random() * spacing;
-        double cumulativeProbability = 0;
-
-        ArrayList<Gene> currentPopulation = population.getGenes();
-
-        while (selectedGenes.size() < totalSelections) {
-            for (Gene gene : currentPopulation) {
-                cumulativeProbability += gene.getFitness();
-                while (cumulativeProbability > pointer) {
-
-                    selectedGenes.add(gene);
-
-                    // Test condition where no duplicates are allowed
-                    // Algorithm takes a lot longer to run, a little unsure on effects on the results (if any)
-                    /*
-                    if (!selectedGenes.contains(gene)) {
-                        selectedGenes.add(gene);
-                    }
-                    */
-
-                    pointer += spacing;
-                }
-            }
-        }
-        return selectedGenes;
-    }
-
-
-    public static List<Gene> selectGenesTest(Population population, int totalSelections) {
-        List<Gene> selectedGenes = new ArrayList<>();
-        double totalFitness = population.getTotalFitness();
-        double spacing = totalFitness / totalSelections;
-        double pointer = Math.random() * spacing;
-        double cumulativeProbability = 0;
-
-        ArrayList<Gene> currentPopulation = population.getGenes();
-
-        Iterator<Gene> geneIterator = currentPopulation.iterator();
-        Gene currentGene = null;
-
-        for (int i = 0; i < totalSelections; i++) {
-            while (pointer > cumulativeProbability) {
-                if (!geneIterator.hasNext()) {
-                    // This should not happen in a properly configured setup, but just in case
-                    throw new IllegalStateException("Ran out of genes before completing selection");
-                }
-                currentGene = geneIterator.next();
-                cumulativeProbability += currentGene.getFitness();
-            }
-            selectedGenes.add(currentGene);
-            pointer += spacing;
-        }
-
-        return selectedGenes;
-    }
-}
+package geneticsteps;
+
+import utils.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class Stochastic {
+
+    /**
+     * Performs SUS on {@param population} to select {@param totalSelections} Genes.
+     */
+    public static List<Gene> selectGenes(Population population, int totalSelections) {
+        List<Gene> selectedGenes = new ArrayList<>();
+        double totalFitness = population.getTotalFitness();
+        double spacing = totalFitness / totalSelections;
+        double pointer = Math.random() * spacing;
+        double cumulativeProbability = 0;
+
+        ArrayList<Gene> currentPopulation = population.getGenes();
+
+        while (selectedGenes.size() < totalSelections) {
+            for (Gene gene : currentPopulation) {
+                cumulativeProbability += gene.getFitness();
+                while (cumulativeProbability > pointer) {
+
+                    selectedGenes.add(gene);
+
+                    // Test condition where no duplicates are allowed
+                    // Algorithm takes a lot longer to run, a little unsure on effects on the results (if any)
+                    // See selectDistinctGenes for a constant time version of this check.
+                    /*
+                    if (!selectedGenes.contains(gene)) {
+                        selectedGenes.add(gene);
+                    }
+                    */
+
+                    pointer += spacing;
+                }
+            }
+        }
+        return selectedGenes;
+    }
+
+
+    public static List<Gene> selectGenesTest(Population population, int totalSelections) {
+        return selectGenesTest(population, totalSelections, new SplittableRandom());
+    }
+
+    /**
+     * Same as {@link #selectGenesTest(Population, int)}, but uses {@param random} to place the first pointer so that results can be reproduced.
+     */
+    public static List<Gene> selectGenesTest(Population population, int totalSelections, SplittableRandom random) {
+        List<Gene> selectedGenes = new ArrayList<>();
+        double totalFitness = population.getTotalFitness();
+        double spacing = totalFitness / totalSelections;
+        double pointer = random.nextDouble() * spacing;
+        double cumulativeProbability = 0;
+
+        ArrayList<Gene> currentPopulation = population.getGenes();
+
+        Iterator<Gene> geneIterator = currentPopulation.iterator();
+        Gene currentGene = null;
+
+        for (int i = 0; i < totalSelections; i++) {
+            while (pointer > cumulativeProbability) {
+                if (!geneIterator.hasNext()) {
+                    // This should not happen in a properly configured setup, but just in case
+                    throw new IllegalStateException("Ran out of genes before completing selection");
+                }
+                currentGene = geneIterator.next();
+                cumulativeProbability += currentGene.getFitness();
+            }
+            selectedGenes.add(currentGene);
+            pointer += spacing;
+        }
+
+        return selectedGenes;
+    }
+
+    /**
+     * Same as {@link #selectGenesTest(Population, int, SplittableRandom)}, but genes forming the same groups are only selected once.
+     * Duplicates are detected in constant time using the canonical hash of each gene. When a pointer lands on a grouping that was
+     * already selected, the first unselected grouping in the population is taken instead. Duplicates are only selected once
+     * every distinct grouping in the population has been selected.
+     */
+    public static List<Gene> selectDistinctGenes(Population population, int totalSelections, SplittableRandom random) {
+        List<Gene> selectedGenes = new ArrayList<>(totalSelections);
+        LongHashSet selectedHashes = new LongHashSet(totalSelections);
+        double totalFitness = population.getTotalFitness();
+        double spacing = totalFitness / totalSelections;
+        double pointer = random.nextDouble() * spacing;
+        double cumulativeProbability = 0;
+
+        ArrayList<Gene> currentPopulation = population.getGenes();
+        int index = -1;
+        int replacementIndex = 0; // Genes before this index have all been selected, so they are never replacements.
+
+        for (int i = 0; i < totalSelections; i++) {
+            while (pointer > cumulativeProbability) {
+                if (++index >= currentPopulation.size()) {
+                    // This should not happen in a properly configured setup, but just in case
+                    throw new IllegalStateException("Ran out of genes before completing selection");
+                }
+                cumulativeProbability += currentPopulation.get(index).getFitness();
+            }
+
+            Gene currentGene = currentPopulation.get(index);
+            if (!selectedHashes.add(currentGene.getCanonicalHash())) {
+                while (replacementIndex < currentPopulation.size()
+                        && !selectedHashes.add(currentPopulation.get(replacementIndex).getCanonicalHash())) {
+                    replacementIndex++;
+                }
+                if (replacementIndex < currentPopulation.size()) {
+                    currentGene = currentPopulation.get(replacementIndex++);
+                }
+            }
+            selectedGenes.add(currentGene);
+            pointer += spacing;
+        }
+
+        return selectedGenes;
+    }
+}
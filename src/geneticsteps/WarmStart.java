@@ -0,0 +1,152 @@
+package geneticsteps;
+
+import model.Cohort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Re-matches a cohort from a previous grouping after a few Persons joined or left, instead of starting from random genes.
+ * Persons keep their previous group where possible, Persons who left are dropped and new Persons are inserted into the groups
+ * where they add the least pair cost. The population is then seeded with that gene and small perturbations of it, so only a few
+ * generations are needed to re-converge and most groups stay as they were.
+ */
+public class WarmStart {
+
+    /**
+     * Arranges Persons of {@param context} into a gene that keeps the groups in {@param previous} (group of each Person Id) as far as possible.
+     * Groups larger than their size in the layout of {@param context} give up the members adding the most pair cost to them, which are then
+     * inserted along with new Persons, each into the group with space left where it adds the least pair cost.
+     * @return Cohort index of each Person, group i of the previous grouping taking the place of group i.
+     */
+    public static int[] arrange(GeneContext context, Map<Integer, Integer> previous) {
+        Cohort cohort = context.getCohort();
+        int groups = context.getGroupCount();
+        int length = context.getGeneLength();
+        int[] counts = new int[groups];
+        int[] previousGroups = new int[cohort.size()]; // Previous group of each cohort index, -1 if none of the groups.
+        for (int index = 0; index < cohort.size(); index++) {
+            Integer group = previous.get(cohort.getPerson(index).getId());
+            previousGroups[index] = group != null && group >= 0 && group < groups ? group : -1;
+            if (previousGroups[index] >= 0) {
+                counts[previousGroups[index]]++;
+            }
+        }
+
+        // Members of all groups share one array, each group taking as many places as it has previous members or Persons in the layout.
+        int[] start = new int[groups + 1];
+        for (int group = 0; group < groups; group++) {
+            start[group + 1] = start[group] + Math.max(counts[group], context.getGroupSize(group));
+        }
+        int[] members = new int[start[groups]];
+        int[] pending = new int[length]; // New Persons, and Persons whose previous group no longer exists or is too large.
+        int pendingCount = 0;
+        Arrays.fill(counts, 0);
+        for (int index = 0; index < cohort.size(); index++) {
+            int group = previousGroups[index];
+            if (group >= 0) {
+                members[start[group] + counts[group]++] = index;
+            } else {
+                pending[pendingCount++] = index;
+            }
+        }
+
+        // Shrink groups that are larger than the layout allows, removing the member that adds the most pair cost each time.
+        for (int group = 0; group < groups; group++) {
+            int capacity = context.getGroupSize(group);
+            while (counts[group] > capacity) {
+                int worst = 0;
+                double worstCost = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < counts[group]; i++) {
+                    double cost = calcAddedCost(context, members, start[group], counts[group], members[start[group] + i]);
+                    if (cost > worstCost) {
+                        worst = i;
+                        worstCost = cost;
+                    }
+                }
+                pending[pendingCount++] = members[start[group] + worst];
+                members[start[group] + worst] = members[start[group] + --counts[group]];
+            }
+        }
+
+        // Insert every pending Person into the group with space left where they add the least pair cost.
+        for (int i = 0; i < pendingCount; i++) {
+            int best = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int group = 0; group < groups; group++) {
+                if (counts[group] < context.getGroupSize(group)) {
+                    double cost = calcAddedCost(context, members, start[group], counts[group], pending[i]);
+                    if (cost < bestCost) {
+                        best = group;
+                        bestCost = cost;
+                    }
+                }
+            }
+            members[start[best] + counts[best]++] = pending[i];
+        }
+
+        int[] gene = new int[length];
+        for (int group = 0; group < groups; group++) {
+            System.arraycopy(members, start[group], gene, context.groupIndex[group], counts[group]);
+        }
+        return gene;
+    }
+
+    /**
+     * Returns summed pair cost between {@param person} and the {@param count} of {@param members} from {@param start},
+     * excluding {@param person} itself.
+     */
+    private static double calcAddedCost(GeneContext context, int[] members, int start, int count, int person) {
+        double cost = 0;
+        for (int i = start; i < start + count; i++) {
+            if (members[i] != person) {
+                cost += context.costMatrix.getCost(person, members[i]);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Creates a population of {@param size} genes of {@param context} seeded from {@param gene}: the gene itself, followed by copies
+     * perturbed by 1 to {@param maxSwaps} random swaps of Persons between different groups.
+     */
+    public static Population seed(GeneContext context, int[] gene, int size, int maxSwaps, SplittableRandom random) {
+        List<Gene> genes = new ArrayList<>(size);
+        genes.add(new Gene(context, gene.clone()));
+        while (genes.size() < size) {
+            int[] perturbed = gene.clone();
+            int swaps = 1 + random.nextInt(Math.max(1, maxSwaps));
+            for (int i = 0; i < swaps; i++) {
+                int first = random.nextInt(perturbed.length);
+                int second = random.nextInt(perturbed.length);
+                if (context.groupOf[first] != context.groupOf[second]) {
+                    int temp = perturbed[first];
+                    perturbed[first] = perturbed[second];
+                    perturbed[second] = temp;
+                }
+            }
+            genes.add(new Gene(context, perturbed));
+        }
+        return Population.of(context, genes);
+    }
+
+    /**
+     * Returns no. of Persons of {@param gene} who are in a different group than in {@param previous}, not counting new Persons.
+     */
+    public static int countMoved(Gene gene, Map<Integer, Integer> previous) {
+        int moved = 0;
+        int[][] groups = gene.getGroupIds();
+        for (int group = 0; group < groups.length; group++) {
+            for (int id : groups[group]) {
+                Integer previousGroup = previous.get(id);
+                if (previousGroup != null && previousGroup != group) {
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+}
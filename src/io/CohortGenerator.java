@@ -0,0 +1,160 @@
+package io;
+
+import model.Person;
+import model.Weight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates seeded synthetic cohorts, used to run and benchmark the algorithm at cohort sizes beyond the questionnaire data.
+ * Characteristics are drawn from the answer distributions of the questionnaire in userdata.xlsx, so synthetic cohorts have the
+ * same scales and skew as real ones. Preferences are formed within small circles of friends, and a fraction of Persons are
+ * picked to be aggregated or distributed.
+ */
+public class CohortGenerator {
+
+    // Answer distribution of each characteristic, in the same order as Weight.heteroWeights and Weight.homoWeights.
+    // Each entry is a {value, no. of respondents} pair taken from userdata.xlsx.
+    private static final double[][][] HETERO_ANSWERS = {
+            {{0, 19}, {1, 17}},
+            {{0.25, 7}, {0.5, 7}, {0.75, 17}, {1, 5}},
+            {{0, 4}, {0.5, 32}},
+            {{0.25, 2}, {0.5, 4}, {0.75, 15}, {1, 15}},
+            {{0.25, 1}, {0.5, 5}, {0.75, 19}, {1, 11}},
+            {{0.25, 17}, {0.5, 7}, {0.75, 9}, {1, 3}},
+            {{0, 1}, {0.25, 5}, {0.5, 9}, {0.75, 17}, {1, 4}}
+    };
+    private static final double[][][] HOMO_ANSWERS = {
+            {{0, 13}, {1, 23}},
+            {{0, 18}, {1, 18}},
+            {{0, 10}, {1, 26}},
+            {{0, 2}, {0.25, 15}, {0.5, 8}, {0.75, 7}, {1, 4}},
+            {{0, 12}, {1, 24}},
+            {{0, 4}, {0.2, 8}, {0.4, 14}, {0.6, 5}, {0.8, 3}, {1, 2}},
+            {{0, 15}, {0.5, 19}, {1, 2}},
+            {{0, 11}, {0.25, 10}, {0.5, 14}, {0.75, 1}},
+            {{0.25, 2}, {0.5, 4}, {0.75, 21}, {1, 9}},
+            {{0, 5}, {0.25, 3}, {0.5, 4}, {0.75, 12}, {1, 12}},
+            {{0.5, 6}, {0.75, 20}, {1, 10}}
+    };
+
+    private final SplittableRandom random;
+    private int maxCircleSize = 4; // Max no. of Persons in a circle of friends, 1 for no preferences.
+    private double preferenceProbability = 0.8; // Chance of a Person preferring each other member of their circle.
+    private double aggregateFraction = 0.05; // Fraction of Persons to be grouped together.
+    private double distributeFraction = 0.05; // Fraction of Persons to be separated.
+
+    /**
+     * A generated cohort, along with the Ids of Persons to aggregate and distribute.
+     */
+    public static class SyntheticCohort {
+        public final List<Person> persons;
+        public final int[] aggregate;
+        public final int[] distribute;
+
+        SyntheticCohort(List<Person> persons, int[] aggregate, int[] distribute) {
+            this.persons = persons;
+            this.aggregate = aggregate;
+            this.distribute = distribute;
+        }
+    }
+
+    /**
+     * Creates a generator whose cohorts are fully determined by {@param seed}.
+     */
+    public CohortGenerator(long seed) {
+        if (HETERO_ANSWERS.length != Weight.HETERO_TOTAL_COUNT || HOMO_ANSWERS.length != Weight.HOMO_TOTAL_COUNT) {
+            throw new IllegalStateException("Answer distributions do not match the characteristics in Weight");
+        }
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Generates a cohort of {@param size} Persons, with Ids from 0 to {@param size} - 1.
+     */
+    public SyntheticCohort generate(int size) {
+        int firstId = 0;
+
+        // Shuffled order is used both to form circles of friends and to pick aggregated/distributed Persons.
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+
+        int[][] preferences = new int[size][];
+        for (int start = 0; start < size; ) {
+            int circleSize = Math.min(size - start, 1 + random.nextInt(Math.max(1, maxCircleSize)));
+            for (int i = start; i < start + circleSize; i++) {
+                int[] preferred = new int[circleSize - 1];
+                int count = 0;
+                for (int j = start; j < start + circleSize; j++) {
+                    if (j != i && random.nextDouble() < preferenceProbability) {
+                        preferred[count++] = firstId + order[j];
+                    }
+                }
+                preferences[order[i]] = Arrays.copyOf(preferred, count);
+            }
+            start += circleSize;
+        }
+
+        List<Person> persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            persons.add(new Person(firstId + i, preferences[i], null, drawAnswers(HETERO_ANSWERS), drawAnswers(HOMO_ANSWERS)));
+        }
+
+        // Aggregated and distributed Persons are disjoint, taken from opposite ends of the shuffled order.
+        int aggregateCount = (int) (size * aggregateFraction);
+        int distributeCount = Math.min(size - aggregateCount, (int) (size * distributeFraction));
+        int[] aggregate = new int[aggregateCount];
+        int[] distribute = new int[distributeCount];
+        for (int i = 0; i < aggregateCount; i++) {
+            aggregate[i] = firstId + order[i];
+        }
+        for (int i = 0; i < distributeCount; i++) {
+            distribute[i] = firstId + order[size - 1 - i];
+        }
+        return new SyntheticCohort(persons, aggregate, distribute);
+    }
+
+    /**
+     * Draws a value for each characteristic from its answer distribution in {@param answers}.
+     */
+    private double[] drawAnswers(double[][][] answers) {
+        double[] values = new double[answers.length];
+        for (int i = 0; i < answers.length; i++) {
+            double total = 0;
+            for (double[] answer : answers[i]) {
+                total += answer[1];
+            }
+            double pick = random.nextDouble() * total;
+            int j = 0;
+            while (j < answers[i].length - 1 && pick >= answers[i][j][1]) {
+                pick -= answers[i][j][1];
+                j++;
+            }
+            values[i] = answers[i][j][0];
+        }
+        return values;
+    }
+
+    public void setMaxCircleSize(int maxCircleSize) {
+        this.maxCircleSize = maxCircleSize;
+    }
+
+    public void setPreferenceProbability(double preferenceProbability) {
+        this.preferenceProbability = preferenceProbability;
+    }
+
+    public void setAggregateFraction(double aggregateFraction) {
+        this.aggregateFraction = aggregateFraction;
+    }
+
+    public void setDistributeFraction(double distributeFraction) {
+        this.distributeFraction = distributeFraction;
+    }
+}
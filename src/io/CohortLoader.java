@@ -0,0 +1,270 @@
+package io;
+
+import model.Person;
+import model.Weight;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads user data from the excel file into Person objects.
+ * The workbook is streamed sheet by sheet instead of being loaded into memory, and the no. of Persons is detected from the data.
+ * Loaded data is also written to a binary cohort cache next to the excel file, which is memory mapped by later runs
+ * as long as the excel file has not changed since.
+ */
+public class CohortLoader {
+
+    public static final int HETERO_SHEET = 1; // Index of sheet containing heterogeneous characteristics.
+    public static final int HOMO_SHEET = 2; // Index of sheet containing homogeneous characteristics.
+    public static final String CACHE_EXTENSION = ".cohort";
+
+    private static final int CACHE_MAGIC = 0x434F4854; // "COHT"
+    private static final int CACHE_VERSION = 1;
+    private static final int CACHE_HEADER_SIZE = 40; // Multiple of 8, so characteristic values are aligned.
+
+    /**
+     * Loads Persons from the excel file at {@param location}, using the cohort cache if it is still valid.
+     * A new cohort cache is written whenever the excel file has to be read.
+     */
+    public static List<Person> load(String location) throws IOException {
+        Path source = Paths.get(location);
+        Path cache = Paths.get(location + CACHE_EXTENSION);
+
+        double[][] characteristics = readCache(cache, source);
+        if (characteristics == null) {
+            characteristics = readWorkbook(source);
+            try {
+                writeCache(cache, source, characteristics[0], characteristics[1]);
+            } catch (IOException e) {
+                // Cache is only an optimisation, the run can continue without it.
+                System.err.println("Unable to write cohort cache " + cache + ": " + e.getMessage());
+            }
+        }
+        return createPersons(characteristics[0], characteristics[1]);
+    }
+
+    /**
+     * Creates a Person for every row of the row-major {@param hetero} and {@param homo} characteristic tables, with the row no. as Id.
+     */
+    private static List<Person> createPersons(double[] hetero, double[] homo) {
+        int count = hetero.length / Weight.HETERO_TOTAL_COUNT;
+        List<Person> persons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double[] heteroChars = Arrays.copyOfRange(hetero, i * Weight.HETERO_TOTAL_COUNT, (i + 1) * Weight.HETERO_TOTAL_COUNT);
+            double[] homoChars = Arrays.copyOfRange(homo, i * Weight.HOMO_TOTAL_COUNT, (i + 1) * Weight.HOMO_TOTAL_COUNT);
+            persons.add(new Person(i, new int[]{}, null, heteroChars, homoChars));
+        }
+        return persons;
+    }
+
+    /**
+     * Streams the Hetero and Homo sheets of the excel file at {@param source} in a single pass.
+     * @return Row-major hetero and homo characteristic tables, in that order.
+     */
+    public static double[][] readWorkbook(Path source) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(source.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            SheetReader hetero = new SheetReader("Hetero", Weight.HETERO_TOTAL_COUNT);
+            SheetReader homo = new SheetReader("Homo", Weight.HOMO_TOTAL_COUNT);
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int index = 0; sheets.hasNext(); index++) {
+                try (InputStream sheet = sheets.next()) {
+                    if (index == HETERO_SHEET) {
+                        readSheet(sheet, strings, hetero);
+                    } else if (index == HOMO_SHEET) {
+                        readSheet(sheet, strings, homo);
+                    }
+                }
+            }
+
+            if (hetero.rows != homo.rows) {
+                throw new IllegalStateException("Hetero sheet has " + hetero.rows + " rows but Homo sheet has " + homo.rows + " rows");
+            }
+            return new double[][]{ hetero.getValues(), homo.getValues() };
+        } catch (IOException | IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Unable to read " + source, e);
+        }
+    }
+
+    /**
+     * Parses a single sheet, passing its cells to {@param handler}.
+     * Styles are deliberately not loaded, so numeric cells are passed as their raw stored value instead of being formatted.
+     */
+    private static void readSheet(InputStream sheet, ReadOnlySharedStringsTable strings, SheetReader handler) throws Exception {
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new XSSFSheetXMLHandler(null, strings, handler, false));
+        parser.parse(new InputSource(sheet));
+    }
+
+    /**
+     * Collects numeric values of the first {@param columnCount} columns of each row into a growable row-major table.
+     * The header row is ignored, as are rows whose first column is empty.
+     */
+    private static class SheetReader implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final String name;
+        private final int columnCount;
+        private final double[] current;
+        private int currentRow;
+        private long filled; // Bit mask of columns in current row that have a value.
+        private double[] values = new double[0];
+        private int rows = 0;
+
+        SheetReader(String name, int columnCount) {
+            this.name = name;
+            this.columnCount = columnCount;
+            this.current = new double[columnCount];
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            currentRow = rowNum;
+            filled = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            // Row 0 contains headers. Rows without a value in the first column are not Persons.
+            if (rowNum == 0 || (filled & 1) == 0) {
+                return;
+            }
+            if (filled != (1L << columnCount) - 1) {
+                throw new IllegalStateException(name + " sheet row " + (rowNum + 1) + " is missing values");
+            }
+            if ((rows + 1) * columnCount > values.length) {
+                values = Arrays.copyOf(values, Math.max(columnCount * 64, values.length * 2));
+            }
+            System.arraycopy(current, 0, values, rows * columnCount, columnCount);
+            rows++;
+        }
+
+        @Override
+        public void cell(String cellReference, String value, XSSFComment comment) {
+            int column = getColumn(cellReference);
+            if (currentRow == 0 || column >= columnCount || value == null || value.isEmpty()) {
+                return;
+            }
+            try {
+                current[column] = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException(name + " sheet cell " + cellReference + " is not a number: " + value);
+            }
+            filled |= 1L << column;
+        }
+
+        /**
+         * Returns zero-indexed column of {@param cellReference} (e.g. 0 for "A2"), without allocating a CellReference for every cell.
+         */
+        private static int getColumn(String cellReference) {
+            int column = 0;
+            for (int i = 0; i < cellReference.length() && Character.isLetter(cellReference.charAt(i)); i++) {
+                column = column * 26 + (Character.toUpperCase(cellReference.charAt(i)) - 'A' + 1);
+            }
+            return column - 1;
+        }
+
+        /**
+         * Returns row-major table of all values read.
+         */
+        double[] getValues() {
+            return Arrays.copyOf(values, rows * columnCount);
+        }
+    }
+
+    /**
+     * Memory maps the cohort cache at {@param cache}.
+     * @return Row-major hetero and homo characteristic tables, or null if the cache is missing or out of date with {@param source}.
+     */
+    public static double[][] readCache(Path cache, Path source) throws IOException {
+        if (!Files.isRegularFile(cache) || Files.size(cache) < CACHE_HEADER_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            long sourceSize = buffer.getLong();
+            long sourceModified = buffer.getLong();
+            int count = buffer.getInt();
+            int heteroCount = buffer.getInt();
+            int homoCount = buffer.getInt();
+
+            boolean valid = magic == CACHE_MAGIC && version == CACHE_VERSION
+                    && sourceSize == Files.size(source)
+                    && sourceModified == Files.getLastModifiedTime(source).toMillis()
+                    && heteroCount == Weight.HETERO_TOTAL_COUNT && homoCount == Weight.HOMO_TOTAL_COUNT
+                    && channel.size() == CACHE_HEADER_SIZE + (long) count * (heteroCount + homoCount) * Double.BYTES;
+            if (!valid) {
+                return null;
+            }
+
+            buffer.position(CACHE_HEADER_SIZE);
+            DoubleBuffer data = buffer.asDoubleBuffer();
+            double[] hetero = new double[count * heteroCount];
+            double[] homo = new double[count * homoCount];
+            data.get(hetero);
+            data.get(homo);
+            return new double[][]{ hetero, homo };
+        }
+    }
+
+    /**
+     * Writes row-major {@param hetero} and {@param homo} characteristic tables to the cohort cache at {@param cache}.
+     * Cache is written to a temporary file first, then renamed, so a partially written cache is never read.
+     */
+    public static void writeCache(Path cache, Path source, double[] hetero, double[] homo) throws IOException {
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(CACHE_HEADER_SIZE + (hetero.length + homo.length) * Double.BYTES);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(CACHE_MAGIC);
+            buffer.putInt(CACHE_VERSION);
+            buffer.putLong(Files.size(source));
+            buffer.putLong(Files.getLastModifiedTime(source).toMillis());
+            buffer.putInt(hetero.length / Weight.HETERO_TOTAL_COUNT);
+            buffer.putInt(Weight.HETERO_TOTAL_COUNT);
+            buffer.putInt(Weight.HOMO_TOTAL_COUNT);
+            buffer.position(CACHE_HEADER_SIZE);
+            buffer.asDoubleBuffer().put(hetero).put(homo);
+            buffer.position(0);
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures bytes allocated by the current thread, using the HotSpot extension of ThreadMXBean.
+ */
+public class Allocations {
+
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns total bytes allocated by the current thread so far, or -1 if the JVM does not support measuring it.
+     */
+    public static long currentThread() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns bytes allocated by the current thread since {@param start}, a value previously returned by {@link #currentThread()}.
+     */
+    public static long since(long start) {
+        return start < 0 ? -1 : currentThread() - start;
+    }
+}
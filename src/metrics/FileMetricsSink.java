@@ -0,0 +1,96 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes statistics of every generation to a file as CSV or JSON lines, one line per generation.
+ * Lines are written to a buffer, which is only flushed when full or when the sink is closed.
+ */
+public class FileMetricsSink implements MetricsSink {
+
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    private static final String[] COLUMNS = {
+            "generation", "selectionNanos", "crossoverNanos", "mutationNanos", "fitnessNanos", "elitismNanos", "localSearchNanos",
+            "evaluations", "swapEvaluations", "allocatedBytes", "bestFitness", "meanFitness", "worstFitness", "diversity"
+    };
+
+    private final Writer writer;
+    private final Format format;
+
+    /**
+     * Creates a sink writing to {@param file} in {@param format}, replacing the file if it exists.
+     */
+    public FileMetricsSink(Path file, Format format) throws IOException {
+        this.writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16);
+        this.format = format;
+        if (format == Format.CSV) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Creates a sink writing to {@param file}, in JSON lines if its name ends with .jsonl or .json, otherwise CSV.
+     */
+    public static FileMetricsSink forFile(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        return new FileMetricsSink(file, name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSON_LINES : Format.CSV);
+    }
+
+    @Override
+    public void record(GenerationStats stats) {
+        Object[] values = {
+                stats.getGeneration(),
+                stats.getPhaseNanos(Phase.SELECTION),
+                stats.getPhaseNanos(Phase.CROSSOVER),
+                stats.getPhaseNanos(Phase.MUTATION),
+                stats.getPhaseNanos(Phase.FITNESS),
+                stats.getPhaseNanos(Phase.ELITISM),
+                stats.getPhaseNanos(Phase.LOCAL_SEARCH),
+                stats.getEvaluations(),
+                stats.getSwapEvaluations(),
+                stats.getAllocatedBytes(),
+                stats.getBestFitness(),
+                stats.getMeanFitness(),
+                stats.getWorstFitness(),
+                stats.getDiversity()
+        };
+        try {
+            if (format == Format.JSON_LINES) {
+                writer.write('{');
+            }
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (format == Format.JSON_LINES) {
+                    writer.write('"');
+                    writer.write(COLUMNS[i]);
+                    writer.write("\":");
+                }
+                writer.write(String.valueOf(values[i]));
+            }
+            if (format == Format.JSON_LINES) {
+                writer.write('}');
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
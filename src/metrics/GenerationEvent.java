@@ -0,0 +1,68 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event holding statistics of a single generation, see {@link JfrMetricsSink}.
+ */
+@Name("lomaply.Generation")
+@Label("Generation")
+@Category("Genetic Algorithm")
+@Description("Statistics of a single generation of the genetic algorithm")
+class GenerationEvent extends Event {
+
+    @Label("Generation")
+    int generation;
+
+    @Label("Selection Time")
+    @Timespan
+    long selection;
+
+    @Label("Crossover Time")
+    @Timespan
+    long crossover;
+
+    @Label("Mutation Time")
+    @Timespan
+    long mutation;
+
+    @Label("Fitness Time")
+    @Timespan
+    long fitness;
+
+    @Label("Elitism Time")
+    @Timespan
+    long elitism;
+
+    @Label("Local Search Time")
+    @Timespan
+    long localSearch;
+
+    @Label("Evaluations")
+    long evaluations;
+
+    @Label("Swap Evaluations")
+    long swapEvaluations;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Best Fitness")
+    double bestFitness;
+
+    @Label("Mean Fitness")
+    double meanFitness;
+
+    @Label("Worst Fitness")
+    double worstFitness;
+
+    @Label("Diversity")
+    double diversity;
+}
@@ -0,0 +1,105 @@
+package metrics;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of a single generation, filled in by GeneticEngine and passed to every MetricsSink.
+ * The same instance is reused for every generation, so sinks must not keep a reference to it.
+ */
+public class GenerationStats {
+
+    int generation;
+    final long[] phaseNanos = new long[Phase.values().length]; // Time spent in each phase, summed across worker threads.
+    long evaluations; // No. of candidate genes evaluated (created by Crossover or Mutation).
+    long swapEvaluations; // No. of swaps scored by local search, which are far cheaper than genes and counted separately.
+    long allocatedBytes; // Bytes allocated across all threads, -1 if the JVM does not support measuring it.
+    double bestFitness;
+    double meanFitness;
+    double worstFitness;
+    double diversity; // Ratio of genes that form a distinct grouping, 1 if no 2 genes form the same groups.
+
+    /**
+     * Clears statistics of the previous generation before generation {@param generation} is recorded.
+     */
+    public void reset(int generation) {
+        this.generation = generation;
+        Arrays.fill(phaseNanos, 0);
+        this.evaluations = 0;
+        this.swapEvaluations = 0;
+        this.allocatedBytes = 0;
+    }
+
+    public void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public void addEvaluations(long evaluations) {
+        this.evaluations += evaluations;
+    }
+
+    public void addSwapEvaluations(long swapEvaluations) {
+        this.swapEvaluations += swapEvaluations;
+    }
+
+    /**
+     * Adds {@param bytes} to allocated bytes, once any measurement is unsupported (negative) the total stays at -1.
+     */
+    public void addAllocatedBytes(long bytes) {
+        this.allocatedBytes = bytes < 0 || this.allocatedBytes < 0 ? -1 : this.allocatedBytes + bytes;
+    }
+
+    /**
+     * Adds phase times, evaluations, swap evaluations and allocated bytes of {@param other}, used to combine statistics of work chunks.
+     */
+    public void add(GenerationStats other) {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] += other.phaseNanos[i];
+        }
+        addEvaluations(other.evaluations);
+        addSwapEvaluations(other.swapEvaluations);
+        addAllocatedBytes(other.allocatedBytes);
+    }
+
+    public void setFitness(double best, double mean, double worst, double diversity) {
+        this.bestFitness = best;
+        this.meanFitness = mean;
+        this.worstFitness = worst;
+        this.diversity = diversity;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getSwapEvaluations() {
+        return swapEvaluations;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public double getBestFitness() {
+        return bestFitness;
+    }
+
+    public double getMeanFitness() {
+        return meanFitness;
+    }
+
+    public double getWorstFitness() {
+        return worstFitness;
+    }
+
+    public double getDiversity() {
+        return diversity;
+    }
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+/**
+ * Emits statistics of every generation as a JFR event (lomaply.Generation), visible in JDK Mission Control alongside
+ * GC and allocation events. Events are only created while a recording with the event enabled is running,
+ * e.g. when started with -XX:StartFlightRecording.
+ */
+public class JfrMetricsSink implements MetricsSink {
+
+    @Override
+    public void record(GenerationStats stats) {
+        GenerationEvent event = new GenerationEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.generation = stats.getGeneration();
+        event.selection = stats.getPhaseNanos(Phase.SELECTION);
+        event.crossover = stats.getPhaseNanos(Phase.CROSSOVER);
+        event.mutation = stats.getPhaseNanos(Phase.MUTATION);
+        event.fitness = stats.getPhaseNanos(Phase.FITNESS);
+        event.elitism = stats.getPhaseNanos(Phase.ELITISM);
+        event.localSearch = stats.getPhaseNanos(Phase.LOCAL_SEARCH);
+        event.evaluations = stats.getEvaluations();
+        event.swapEvaluations = stats.getSwapEvaluations();
+        event.allocated = stats.getAllocatedBytes();
+        event.bestFitness = stats.getBestFitness();
+        event.meanFitness = stats.getMeanFitness();
+        event.worstFitness = stats.getWorstFitness();
+        event.diversity = stats.getDiversity();
+        event.commit();
+    }
+}
@@ -0,0 +1,19 @@
+package metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives statistics of every generation of a GeneticEngine. Called on the thread running the engine.
+ */
+public interface MetricsSink extends Closeable {
+
+    /**
+     * Records {@param stats}, which is only valid until this method returns.
+     */
+    void record(GenerationStats stats);
+
+    @Override
+    default void close() throws IOException {
+    }
+}
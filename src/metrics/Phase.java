@@ -0,0 +1,15 @@
+package metrics;
+
+/**
+ * Phases of a generation that are timed separately.
+ * Crossover and Mutation times exclude time spent scoring the genes they create, which is counted under FITNESS.
+ * Local search time includes scoring, as its swaps are scored as they are searched.
+ */
+public enum Phase {
+    SELECTION,
+    CROSSOVER,
+    MUTATION,
+    FITNESS,
+    ELITISM,
+    LOCAL_SEARCH
+}
@@ -0,0 +1,219 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Stores every Person to be grouped, with their characteristics laid out in a single contiguous table.
+ * Genes refer to Persons by their index in the cohort, Person objects are only needed when loading data and printing results.
+ * fMix of a pair is calculated by one of two kernels, see {@link Kernel}.
+ */
+public class Cohort {
+
+    /**
+     * Implementation of {@link #calcMix(int, int)}.
+     */
+    public enum Kernel {
+        // Calculates fHetero and fHomo separately, weighting each difference as it is summed. Matches Person exactly.
+        SCALAR,
+        // Reads a table in which every characteristic is already multiplied by its weight in fMix (negated for hetero), so fMix is a
+        // single signed sum of absolute differences across the whole row, summed into 4 independent accumulators so additions
+        // do not wait on each other. Results differ from SCALAR by rounding only. Weighting inside the absolute difference relies on
+        // weights being non-negative, which WeightProfile enforces, so FUSED applies to every profile and has no fallback to SCALAR.
+        FUSED
+    }
+
+    // Kernel used by cohorts created afterwards, SCALAR is only used when selected here.
+    public static Kernel KERNEL = Kernel.FUSED;
+
+    // No. of characteristics stored per Person, hetero characteristics first followed by homo characteristics.
+    public static final int CHAR_COUNT = Weight.HETERO_TOTAL_COUNT + Weight.HOMO_TOTAL_COUNT;
+
+    private final Person[] persons;
+    private final int size;
+    private final double[] characteristics; // Row-major table, CHAR_COUNT values per Person.
+    private final double[] means; // Mean of each characteristic of all Persons in cohort.
+    private final WeightProfile profile;
+    private final double[] heteroWeights; // Characteristic weights of profile.
+    private final double[] homoWeights;
+    private final double heteroWeightSum;
+    private final double homoWeightSum;
+    private final Kernel kernel;
+    private final double[] kernelTable; // Table read by the kernel, same layout as characteristics. Weighted for FUSED.
+    private final double[] signs; // -1 for hetero and 1 for homo characteristics, only used by FUSED.
+
+    /**
+     * Creates a cohort from {@param persons}, where the index of each Person is their position in the list, weighed by {@link Weight#getProfile()}.
+     */
+    public Cohort(List<Person> persons) {
+        this(persons, Weight.getProfile());
+    }
+
+    /**
+     * Creates a cohort from {@param persons}, where the index of each Person is their position in the list, weighed by {@param profile}.
+     */
+    public Cohort(List<Person> persons, WeightProfile profile) {
+        this.profile = profile;
+        this.heteroWeights = profile.getHeteroWeights();
+        this.homoWeights = profile.getHomoWeights();
+        this.heteroWeightSum = profile.getHeteroWeightSum();
+        this.homoWeightSum = profile.getHomoWeightSum();
+        this.persons = persons.toArray(Person[]::new);
+        this.size = this.persons.length;
+        this.characteristics = new double[size * CHAR_COUNT];
+        this.means = new double[CHAR_COUNT];
+
+        for (int i = 0; i < size; i++) {
+            int offset = i * CHAR_COUNT;
+            System.arraycopy(this.persons[i].getHeterogeneous(), 0, characteristics, offset, Weight.HETERO_TOTAL_COUNT);
+            System.arraycopy(this.persons[i].getHomogeneous(), 0, characteristics, offset + Weight.HETERO_TOTAL_COUNT, Weight.HOMO_TOTAL_COUNT);
+            for (int j = 0; j < CHAR_COUNT; j++) {
+                means[j] += (characteristics[offset + j] / size);
+            }
+        }
+
+        this.kernel = KERNEL;
+        this.signs = new double[CHAR_COUNT];
+        if (kernel == Kernel.FUSED) {
+            double[] scale = new double[CHAR_COUNT];
+            for (int j = 0; j < Weight.HETERO_TOTAL_COUNT; j++) {
+                scale[j] = profile.getHeterogeneous() * heteroWeights[j] / heteroWeightSum;
+                signs[j] = -1;
+            }
+            for (int j = 0; j < Weight.HOMO_TOTAL_COUNT; j++) {
+                scale[Weight.HETERO_TOTAL_COUNT + j] = profile.getHomogeneous() * homoWeights[j] / homoWeightSum;
+                signs[Weight.HETERO_TOTAL_COUNT + j] = 1;
+            }
+            // As profile weights are never negative, weight * |a - b| = |weight * a - weight * b|.
+            this.kernelTable = new double[characteristics.length];
+            for (int i = 0; i < kernelTable.length; i++) {
+                kernelTable[i] = characteristics[i] * scale[i % CHAR_COUNT];
+            }
+        } else {
+            this.kernelTable = characteristics;
+        }
+    }
+
+    /**
+     * Returns kernel used by this cohort.
+     */
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Returns profile the cohort is weighed by.
+     */
+    public WeightProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Returns no. of Persons in cohort.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns Person at {@param index}.
+     */
+    public Person getPerson(int index) {
+        return persons[index];
+    }
+
+    /**
+     * Returns the row-major characteristic table, each Person's row starts at index * CHAR_COUNT.
+     */
+    public double[] getCharacteristics() {
+        return characteristics;
+    }
+
+    /**
+     * Returns mean of each characteristic of all Persons in cohort, in the same order as a row of the characteristic table.
+     */
+    public double[] getMeans() {
+        return means;
+    }
+
+    /**
+     * Calculates similarity of Persons at {@param index1} and {@param index2} based on Homogeneous characteristics for fHomo.
+     * Same as {@link Person#calcSimilarity(Person, Person)}.
+     * @return Similarity value, as a double.
+     */
+    public double calcSimilarity(int index1, int index2) {
+        int first = index1 * CHAR_COUNT + Weight.HETERO_TOTAL_COUNT;
+        int second = index2 * CHAR_COUNT + Weight.HETERO_TOTAL_COUNT;
+        double similaritySum = 0;
+        for (int i = 0; i < Weight.HOMO_TOTAL_COUNT; i++) {
+            similaritySum += homoWeights[i] * Math.abs(characteristics[first + i] - characteristics[second + i]);
+        }
+        return similaritySum / homoWeightSum;
+    }
+
+    /**
+     * Calculates difference of Persons at {@param index1} and {@param index2} based on Heterogeneous characteristics for fHetero.
+     * Same as {@link Person#calcDifference(Person, Person)}.
+     * @return Difference value, as a double.
+     */
+    public double calcDifference(int index1, int index2) {
+        int first = index1 * CHAR_COUNT;
+        int second = index2 * CHAR_COUNT;
+        double differenceSum = 0;
+        for (int i = 0; i < Weight.HETERO_TOTAL_COUNT; i++) {
+            differenceSum += heteroWeights[i] * Math.abs(characteristics[first + i] - characteristics[second + i]);
+        }
+        return 1 - (differenceSum / heteroWeightSum);
+    }
+
+    /**
+     * Calculates fMix (weighted fHetero and fHomo) of Persons at {@param index1} and {@param index2}.
+     */
+    public double calcMix(int index1, int index2) {
+        return calcMix(kernelTable, index1 * CHAR_COUNT, index2 * CHAR_COUNT);
+    }
+
+    /**
+     * Same as {@link #calcMix(int, int)}, for rows starting at {@param first} and {@param second} of a table filled by {@link #gatherRows}.
+     */
+    public double calcMix(double[] rows, int first, int second) {
+        if (kernel == Kernel.SCALAR) {
+            double differenceSum = 0;
+            for (int i = 0; i < Weight.HETERO_TOTAL_COUNT; i++) {
+                differenceSum += heteroWeights[i] * Math.abs(rows[first + i] - rows[second + i]);
+            }
+            double similaritySum = 0;
+            for (int i = Weight.HETERO_TOTAL_COUNT; i < CHAR_COUNT; i++) {
+                similaritySum += homoWeights[i - Weight.HETERO_TOTAL_COUNT] * Math.abs(rows[first + i] - rows[second + i]);
+            }
+            return (1 - (differenceSum / heteroWeightSum)) * profile.getHeterogeneous()
+                    + (similaritySum / homoWeightSum) * profile.getHomogeneous();
+        }
+
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        int i = 0;
+        for (; i + 3 < CHAR_COUNT; i += 4) {
+            sum0 += signs[i] * Math.abs(rows[first + i] - rows[second + i]);
+            sum1 += signs[i + 1] * Math.abs(rows[first + i + 1] - rows[second + i + 1]);
+            sum2 += signs[i + 2] * Math.abs(rows[first + i + 2] - rows[second + i + 2]);
+            sum3 += signs[i + 3] * Math.abs(rows[first + i + 3] - rows[second + i + 3]);
+        }
+        for (; i < CHAR_COUNT; i++) {
+            sum0 += signs[i] * Math.abs(rows[first + i] - rows[second + i]);
+        }
+        return profile.getHeterogeneous() + ((sum0 + sum1) + (sum2 + sum3));
+    }
+
+    /**
+     * Copies the kernel rows of Persons at cohort indexes {@param indexes}[from] to {@param indexes}[to] (inclusive) into {@param target},
+     * one after another CHAR_COUNT values apart. fMix of every pair of a group can then be calculated from rows that are already in cache,
+     * instead of loading 2 rows from anywhere in the table for each pair.
+     */
+    public void gatherRows(int[] indexes, int from, int to, double[] target) {
+        for (int i = from; i <= to; i++) {
+            System.arraycopy(kernelTable, indexes[i] * CHAR_COUNT, target, (i - from) * CHAR_COUNT, CHAR_COUNT);
+        }
+    }
+}
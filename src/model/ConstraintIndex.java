@@ -0,0 +1,147 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Preferences between Persons and Persons to be aggregated or distributed, indexed by cohort index.
+ * Built once per cohort, so that pair costs (fPref and fDist) can be calculated without boxing, allocating or searching lists.
+ * Preferences are stored as compressed sparse rows: the preferences of each Person are sorted by cohort index and stored
+ * consecutively, so looking up a preference is a binary search of a (usually tiny) row.
+ */
+public class ConstraintIndex {
+
+    private static final byte AGGREGATED = 1;
+    private static final byte DISTRIBUTED = 2;
+
+    private final int[] rowStart; // Index of first preference of each Person in preferred, followed by total no. of preferences.
+    private final int[] preferred; // Cohort index of each preferred Person, sorted within each row.
+    private final double[] weights; // Strength of each preference, from 0 to 1.
+    private final byte[] constraints; // Whether each Person is aggregated and/or distributed, as AGGREGATED and DISTRIBUTED bits.
+
+    /**
+     * Builds index of {@param cohort}.
+     * Preferences and constraints referring to Ids of Persons outside of the cohort are ignored.
+     * @param aggregate Array of Ids of Persons to group together.
+     * @param distribute Array of Ids of Persons to separate.
+     */
+    public ConstraintIndex(Cohort cohort, int[] aggregate, int[] distribute) {
+        int size = cohort.size();
+        Map<Integer, Integer> indexOf = new HashMap<>(size * 2);
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            indexOf.put(cohort.getPerson(i).getId(), i);
+            total += cohort.getPerson(i).getPreferences().length;
+        }
+
+        this.rowStart = new int[size + 1];
+        int[] preferred = new int[total];
+        double[] weights = new double[total];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            rowStart[i] = count;
+            Person person = cohort.getPerson(i);
+            int[] ids = person.getPreferences();
+            for (int j = 0; j < ids.length; j++) {
+                Integer index = indexOf.get(ids[j]);
+                if (index != null) {
+                    count = insert(preferred, weights, rowStart[i], count, index, person.getPreferenceWeight(j));
+                }
+            }
+        }
+        rowStart[size] = count;
+        this.preferred = Arrays.copyOf(preferred, count);
+        this.weights = Arrays.copyOf(weights, count);
+
+        this.constraints = new byte[size];
+        mark(indexOf, aggregate, AGGREGATED);
+        mark(indexOf, distribute, DISTRIBUTED);
+    }
+
+    /**
+     * Inserts preference for {@param index} into the sorted row starting at {@param rowStart} and ending at {@param rowEnd}.
+     * Repeated preferences for the same Person keep the strongest weight.
+     * @return New end of row.
+     */
+    private static int insert(int[] preferred, double[] weights, int rowStart, int rowEnd, int index, double weight) {
+        int position = rowEnd;
+        while (position > rowStart && preferred[position - 1] >= index) {
+            position--;
+        }
+        if (position < rowEnd && preferred[position] == index) {
+            weights[position] = Math.max(weights[position], weight);
+            return rowEnd;
+        }
+        System.arraycopy(preferred, position, preferred, position + 1, rowEnd - position);
+        System.arraycopy(weights, position, weights, position + 1, rowEnd - position);
+        preferred[position] = index;
+        weights[position] = weight;
+        return rowEnd + 1;
+    }
+
+    private void mark(Map<Integer, Integer> indexOf, int[] ids, byte constraint) {
+        for (int id : ids) {
+            Integer index = indexOf.get(id);
+            if (index != null) {
+                constraints[index] |= constraint;
+            }
+        }
+    }
+
+    /**
+     * Returns strength (0 to 1) of preference of Person at {@param from} to be grouped with Person at {@param to}, 0 if there is none.
+     */
+    public double getPreference(int from, int to) {
+        int low = rowStart[from];
+        int high = rowStart[from + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (preferred[mid] < to) {
+                low = mid + 1;
+            } else if (preferred[mid] > to) {
+                high = mid - 1;
+            } else {
+                return weights[mid];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether Person at {@param index} is to be grouped with the other aggregated Persons.
+     */
+    public boolean isAggregated(int index) {
+        return (constraints[index] & AGGREGATED) != 0;
+    }
+
+    /**
+     * Returns whether Person at {@param index} is to be separated from the other distributed Persons.
+     */
+    public boolean isDistributed(int index) {
+        return (constraints[index] & DISTRIBUTED) != 0;
+    }
+
+    /**
+     * Calculates (1 - average) of preference of Persons at {@param index1} and {@param index2} for each other for fPref.
+     * Same as {@link Person#calcPreferred(Person, Person)}.
+     * @return Preference average for fPref calculation.
+     */
+    public double calcPreferred(int index1, int index2) {
+        return 1 - ((getPreference(index1, index2) + getPreference(index2, index1)) / 2.0);
+    }
+
+    /**
+     * Calculates rValue of Persons at {@param index1} and {@param index2} for fDist.
+     * @return -1 if both are to be grouped together, 1 if both are to be separated, otherwise 0.
+     */
+    public int calcDistribution(int index1, int index2) {
+        int shared = constraints[index1] & constraints[index2];
+        if ((shared & AGGREGATED) != 0) {
+            return -1;
+        } else if ((shared & DISTRIBUTED) != 0) {
+            return 1;
+        }
+        return 0;
+    }
+}
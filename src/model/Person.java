@@ -1,23 +1,43 @@
 package model;
 
-import geneticsteps.Gene;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
-
 public class Person {
-    private static int global = 0;
+    private static int global = 0; // Next Id given to Persons created without one, shared by every cohort in the JVM.
 
     private final int id;
-    private final List<Integer> preferences; // List of id's of other people current Person object prefers to be matched with.
+    private final int[] preferences; // Id's of other people current Person object prefers to be matched with.
+    private final double[] preferenceWeights; // Strength of each preference from 0 to 1, null if every preference has strength 1.
     private final double[] heterogeneous;
     private final double[] homogeneous;
 
     public Person(int[] pref, double[] hetero, double[] homo) {
-        this.id = global++;
-        this.preferences = Arrays.stream(pref).boxed().collect(Collectors.toList());
+        this(pref, null, hetero, homo);
+    }
+
+    /**
+     * Creates a Person whose preference for Person with Id {@param pref}[i] has strength {@param prefWeights}[i], from 0 to 1.
+     */
+    public Person(int[] pref, double[] prefWeights, double[] hetero, double[] homo) {
+        this(nextId(), pref, prefWeights, hetero, homo);
+    }
+
+    /**
+     * Same as {@link #Person(int[], double[], double[], double[])}, but with Id {@param id} instead of the next Id of the JVM.
+     * Used to number each cohort on its own, so that cohorts loaded side by side (e.g. by concurrent jobs) do not depend on each other.
+     */
+    public Person(int id, int[] pref, double[] prefWeights, double[] hetero, double[] homo) {
+        if (prefWeights != null) {
+            if (prefWeights.length != pref.length) {
+                throw new IllegalArgumentException("Expected " + pref.length + " preference weights but got " + prefWeights.length);
+            }
+            for (double weight : prefWeights) {
+                if (!(weight >= 0 && weight <= 1)) {
+                    throw new IllegalArgumentException("Preference weight must be between 0 and 1 but got " + weight);
+                }
+            }
+        }
+        this.id = id;
+        this.preferences = pref;
+        this.preferenceWeights = prefWeights;
         this.heterogeneous = hetero;
         this.homogeneous = homo;
     }
@@ -36,6 +56,33 @@ public class Person {
         return homogeneous;
     }
 
+    /**
+     * Returns Ids of Persons this Person prefers to be grouped with.
+     */
+    public int[] getPreferences() {
+        return preferences;
+    }
+
+    /**
+     * Returns strength (0 to 1) of the preference at {@param index} of {@link #getPreferences()}.
+     */
+    public double getPreferenceWeight(int index) {
+        return preferenceWeights == null ? 1 : preferenceWeights[index];
+    }
+
+    /**
+     * Returns strength (0 to 1) of preference for Person with Id {@param id}, 0 if there is none.
+     */
+    public double getPreference(int id) {
+        double preference = 0;
+        for (int i = 0; i < preferences.length; i++) {
+            if (preferences[i] == id) {
+                preference = Math.max(preference, getPreferenceWeight(i));
+            }
+        }
+        return preference;
+    }
+
     /**
      * Calculates similarity for {@param pair1} and {@param pair2} based on Heterogeneous characteristics for fHetero.
      * @return Similarity value, as a double.
@@ -62,34 +109,27 @@ public class Person {
 
     /**
      * Calculates (1 - average) of {@param pair1} and {@param pair2} preference for each other for fPref.
-     * Currently, each Person's preference for another Person is ether 0 or 1. Might be changed to support 0 <= x <= 1 in future.
+     * Each Person's preference for another Person is from 0 (none) to 1, see {@link #getPreference(int)}.
+     * Pair costs use {@link ConstraintIndex#calcPreferred(int, int)} instead, which does not search preferences linearly.
      * @return Preference average for fPref calculation.
      */
     public static double calcPreferred(Person pair1, Person pair2) {
-        int first = pair1.preferences.contains(pair2.id) ? 1 : 0;
-        int second = pair2.preferences.contains(pair1.id) ? 1 : 0;
-        return 1 - ((first + second) / 2.0);
+        return 1 - ((pair1.getPreference(pair2.id) + pair2.getPreference(pair1.id)) / 2.0);
+    }
+
+
+    public int getId() {
+        return this.id;
     }
 
     /**
-     * Calculates rValue of {@param pair1} and {@param pair2} for fDist.
-     * @return rValue as an int.
+     * Returns id that will be given to the next Person created, so that preferences can refer to Persons not yet created.
      */
-    public static int calcDistribution(Person pair1, Person pair2) {
-        List<Integer> pairId = new ArrayList<>();
-        pairId.add(pair1.id);
-        pairId.add(pair2.id);
-        int rValue = 0;
-        if (Gene.aggregatedPersons.containsAll(pairId)) {
-            rValue = -1;
-        } else if (Gene.distributedPersons.containsAll(pairId)) {
-            rValue = 1;
-        }
-        return rValue;
+    public static int getNextId() {
+        return global;
     }
 
-
-    public int getId() {
-        return this.id;
+    private static synchronized int nextId() {
+        return global++;
     }
 }
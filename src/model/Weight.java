@@ -4,9 +4,12 @@ import java.util.Arrays;
 
 /**
  * Stores weights of various characteristics.
+ * The constants below make up the default {@link WeightProfile}, other profiles can be used without recompiling via {@link #setProfile}.
  */
 public class Weight {
 
+    private static WeightProfile profile; // Profile used by cohorts set up afterwards, null for the default profile.
+
     // Absolute weights of individual characteristics.
     // Weight of Heterogeneous characteristics.
     public static final double GENDER = 1;
@@ -51,4 +54,18 @@ public class Weight {
     public static final double WEIGHT_DISTRIBUTION = 0;
     public static final double WEIGHT_PREFERENCE = 0;
     public static final double F_TOTAL_WEIGHT = WEIGHT_MIX + WEIGHT_BALANCE + WEIGHT_DISTRIBUTION + WEIGHT_PREFERENCE;
+
+    /**
+     * Returns profile used to calculate fitness of cohorts set up afterwards (see {@link geneticsteps.Gene#setBaseInfo}).
+     */
+    public static WeightProfile getProfile() {
+        return profile == null ? WeightProfile.getDefault() : profile;
+    }
+
+    /**
+     * Sets profile used to calculate fitness of cohorts set up afterwards, the default profile is made up of the constants above.
+     */
+    public static void setProfile(WeightProfile profile) {
+        Weight.profile = profile;
+    }
 }
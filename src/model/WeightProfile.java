@@ -0,0 +1,239 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Set of weights used to calculate fitness, the runtime counterpart of the constants in {@link Weight}.
+ * Fitness is a weighted combination of raw components (summed fHetero, fHomo, fBal, fPref and fDist of a gene), so a gene whose
+ * components are known can be scored under any profile with the same characteristic weights without being evaluated again,
+ * see {@link #calcFitness(double[])}.
+ * Profiles are loaded from properties files, where every key is optional and defaults to the base profile:
+ * <pre>
+ * heteroWeights = 1, 1, 1, 1, 1, 1, 1
+ * homoWeights = 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1
+ * heterogeneous = 0.3
+ * homogeneous = 0.7
+ * mix = 2
+ * balance = 2
+ * distribution = 0
+ * preference = 0
+ * </pre>
+ */
+public class WeightProfile {
+
+    // Index of each raw component in a component vector.
+    public static final int HETERO = 0; // Sum of fHetero of every pair grouped together.
+    public static final int HOMO = 1; // Sum of fHomo of every pair grouped together.
+    public static final int BALANCE = 2; // Sum of fBal of every group.
+    public static final int PREFERENCE = 3; // Sum of fPref of every pair grouped together.
+    public static final int DISTRIBUTION = 4; // Sum of fDist (rValue) of every pair grouped together.
+    public static final int COMPONENT_COUNT = 5;
+
+    private static final WeightProfile DEFAULT = new WeightProfile("default", Weight.heteroWeights, Weight.homoWeights,
+            Weight.WEIGHT_HETEROGENEOUS, Weight.WEIGHT_HOMOGENEOUS, Weight.WEIGHT_MIX, Weight.WEIGHT_BALANCE,
+            Weight.WEIGHT_DISTRIBUTION, Weight.WEIGHT_PREFERENCE);
+
+    private final String name;
+    private final double[] heteroWeights;
+    private final double[] homoWeights;
+    private final double heteroWeightSum;
+    private final double homoWeightSum;
+    private final double heterogeneous; // Weight of fHetero within fMix.
+    private final double homogeneous; // Weight of fHomo within fMix.
+    private final double mix;
+    private final double balance;
+    private final double distribution;
+    private final double preference;
+
+    /**
+     * Creates a profile, every weight must be non-negative.
+     * @throws IllegalArgumentException If a weight is negative or not finite, or a characteristic weight array has the wrong length.
+     */
+    public WeightProfile(String name, double[] heteroWeights, double[] homoWeights, double heterogeneous, double homogeneous,
+                         double mix, double balance, double distribution, double preference) {
+        if (heteroWeights.length != Weight.HETERO_TOTAL_COUNT || homoWeights.length != Weight.HOMO_TOTAL_COUNT) {
+            throw new IllegalArgumentException("Profile " + name + " must have " + Weight.HETERO_TOTAL_COUNT + " hetero and "
+                    + Weight.HOMO_TOTAL_COUNT + " homo weights but has " + heteroWeights.length + " and " + homoWeights.length);
+        }
+        this.name = name;
+        this.heteroWeights = checkWeights(name, heteroWeights.clone());
+        this.homoWeights = checkWeights(name, homoWeights.clone());
+        this.heteroWeightSum = Arrays.stream(heteroWeights).sum();
+        this.homoWeightSum = Arrays.stream(homoWeights).sum();
+        double[] weights = checkWeights(name, new double[]{ heterogeneous, homogeneous, mix, balance, distribution, preference });
+        this.heterogeneous = weights[0];
+        this.homogeneous = weights[1];
+        this.mix = weights[2];
+        this.balance = weights[3];
+        this.distribution = weights[4];
+        this.preference = weights[5];
+        if (getTotalWeight() <= 0) {
+            throw new IllegalArgumentException("Profile " + name + " must have a positive total weight");
+        }
+    }
+
+    private static double[] checkWeights(String name, double[] weights) {
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Profile " + name + " has invalid weight " + weight);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Returns profile made up of the constants in {@link Weight}.
+     */
+    public static WeightProfile getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Loads profile from the properties file at {@param file}, named after the file. Missing keys take their value from {@param base}.
+     */
+    public static WeightProfile load(Path file, WeightProfile base) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        String name = file.getFileName().toString();
+        int extension = name.lastIndexOf('.');
+        return fromProperties(extension > 0 ? name.substring(0, extension) : name, properties, base);
+    }
+
+    /**
+     * Creates profile named {@param name} from {@param properties}, see {@link WeightProfile} for keys. Missing keys take their value from {@param base}.
+     */
+    public static WeightProfile fromProperties(String name, Properties properties, WeightProfile base) {
+        return new WeightProfile(name,
+                getWeights(properties, "heteroWeights", base.heteroWeights),
+                getWeights(properties, "homoWeights", base.homoWeights),
+                getWeight(properties, "heterogeneous", base.heterogeneous),
+                getWeight(properties, "homogeneous", base.homogeneous),
+                getWeight(properties, "mix", base.mix),
+                getWeight(properties, "balance", base.balance),
+                getWeight(properties, "distribution", base.distribution),
+                getWeight(properties, "preference", base.preference));
+    }
+
+    private static double getWeight(Properties properties, String key, double fallback) {
+        String value = properties.getProperty(key);
+        try {
+            return value == null ? fallback : Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Weight " + key + " is not a number: " + value);
+        }
+    }
+
+    private static double[] getWeights(Properties properties, String key, double[] fallback) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return fallback;
+        }
+        String[] parts = value.split(",");
+        double[] weights = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                weights[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Weight " + key + " is not a list of numbers: " + value);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Calculates fitness of a gene from its raw {@param components}, indexed by HETERO, HOMO, BALANCE, PREFERENCE and DISTRIBUTION.
+     * Fitness = 1 / F, scaled by the total weight, where F is the weighted sum of the components.
+     */
+    public double calcFitness(double[] components) {
+        double fMix = components[HETERO] * heterogeneous + components[HOMO] * homogeneous;
+        return getTotalWeight() / (fMix * mix + components[BALANCE] * balance
+                + components[PREFERENCE] * preference + components[DISTRIBUTION] * distribution);
+    }
+
+    /**
+     * Returns whether {@param other} weighs every characteristic the same as this profile, in which case the raw components of a gene
+     * are the same under both profiles.
+     */
+    public boolean hasSameCharacteristicWeights(WeightProfile other) {
+        return Arrays.equals(heteroWeights, other.heteroWeights) && Arrays.equals(homoWeights, other.homoWeights);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Characteristic weight arrays, only shared within the package as they must not be modified.
+    double[] getHeteroWeights() {
+        return heteroWeights;
+    }
+
+    double[] getHomoWeights() {
+        return homoWeights;
+    }
+
+    /**
+     * Returns weight of hetero characteristic {@param index}, in the same order as the Hetero sheet.
+     */
+    public double getHeteroWeight(int index) {
+        return heteroWeights[index];
+    }
+
+    /**
+     * Returns weight of homo characteristic {@param index}, in the same order as the Homo sheet.
+     */
+    public double getHomoWeight(int index) {
+        return homoWeights[index];
+    }
+
+    public double getHeteroWeightSum() {
+        return heteroWeightSum;
+    }
+
+    public double getHomoWeightSum() {
+        return homoWeightSum;
+    }
+
+    public double getHeterogeneous() {
+        return heterogeneous;
+    }
+
+    public double getHomogeneous() {
+        return homogeneous;
+    }
+
+    public double getMix() {
+        return mix;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public double getDistribution() {
+        return distribution;
+    }
+
+    public double getPreference() {
+        return preference;
+    }
+
+    /**
+     * Returns sum of weights of fMix, fBal, fDist and fPref, the numerator of fitness.
+     */
+    public double getTotalWeight() {
+        return mix + balance + distribution + preference;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,219 @@
+package output;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes output on a background thread, so the genetic algorithm does not wait for console or file I/O.
+ * Records are posted to a bounded ring buffer, and written in batches by the writer thread.
+ * When the buffer is full, progress records are dropped (and counted) rather than stalling the algorithm, while text waits for space.
+ */
+public class AsyncOutput implements Closeable {
+
+    public static int CAPACITY = 1 << 12; // No. of records buffered, rounded up to a power of 2.
+
+    private static final int PROGRESS = 0;
+    private static final int TEXT = 1;
+
+    private final Verbosity verbosity;
+    private final Writer writer;
+    private final boolean ownsStream; // Whether the stream is closed along with this output, false for stdout.
+    private final Thread thread;
+
+    // Ring buffer, records from head (inclusive) to tail (exclusive) are waiting to be written.
+    private final int[] kinds;
+    private final int[] generations;
+    private final double[] fitness;
+    private final String[] texts;
+    private final int mask;
+    private long head = 0;
+    private long tail = 0;
+    private long dropped = 0; // No. of progress records dropped since the last batch.
+    private boolean closed = false;
+
+    /**
+     * Creates an output writing records at or below {@param verbosity} to {@param out}.
+     * @param ownsStream Whether {@param out} is closed when this output is closed.
+     */
+    public AsyncOutput(OutputStream out, boolean ownsStream, Verbosity verbosity) {
+        int capacity = Integer.highestOneBit(Math.max(2, CAPACITY) * 2 - 1);
+        this.verbosity = verbosity;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        this.ownsStream = ownsStream;
+        this.kinds = new int[capacity];
+        this.generations = new int[capacity];
+        this.fitness = new double[capacity];
+        this.texts = new String[capacity];
+        this.mask = capacity - 1;
+        this.thread = new Thread(this::drain, "output-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Creates an output writing to stdout.
+     */
+    public static AsyncOutput toStdout(Verbosity verbosity) {
+        return new AsyncOutput(System.out, false, verbosity);
+    }
+
+    /**
+     * Creates an output writing to {@param file}, replacing it if it exists.
+     */
+    public static AsyncOutput toFile(Path file, Verbosity verbosity) throws IOException {
+        return new AsyncOutput(Files.newOutputStream(file), true, verbosity);
+    }
+
+    /**
+     * Returns whether records of {@param level} are written, used to skip building text that would be discarded.
+     */
+    public boolean isEnabled(Verbosity level) {
+        return level.compareTo(verbosity) <= 0;
+    }
+
+    /**
+     * Posts fitness of best gene after generation {@param generation} (PROGRESS level). Never blocks, the record is dropped if the buffer is full.
+     */
+    public void progress(int generation, double bestFitness) {
+        if (!isEnabled(Verbosity.PROGRESS)) {
+            return;
+        }
+        synchronized (this) {
+            if (closed || tail - head > mask) {
+                dropped++;
+                return;
+            }
+            int slot = (int) (tail & mask);
+            kinds[slot] = PROGRESS;
+            generations[slot] = generation;
+            fitness[slot] = bestFitness;
+            publish();
+        }
+    }
+
+    /**
+     * Posts {@param text} at {@param level}, waiting for space if the buffer is full. A line break is not added.
+     */
+    public void print(Verbosity level, CharSequence text) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        String value = text.toString();
+        synchronized (this) {
+            try {
+                while (!closed && tail - head > mask) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (closed) {
+                return;
+            }
+            int slot = (int) (tail & mask);
+            kinds[slot] = TEXT;
+            texts[slot] = value;
+            publish();
+        }
+    }
+
+    /**
+     * Makes the record at tail visible to the writer thread, must be called while holding the lock.
+     */
+    private void publish() {
+        // Writer only needs waking when it may be waiting on an empty buffer.
+        if (tail++ == head) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Loop of the writer thread, writes every record posted until the output is closed and the buffer is empty.
+     */
+    private void drain() {
+        StringBuilder batch = new StringBuilder(1 << 12);
+        boolean failed = false;
+        while (true) {
+            long from;
+            long to;
+            long lost;
+            synchronized (this) {
+                while (head == tail && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (head == tail) {
+                    break;
+                }
+                from = head;
+                to = tail;
+                lost = dropped;
+                dropped = 0;
+            }
+
+            // Records from head to tail are not touched by producers until head is advanced, so they are formatted without the lock.
+            batch.setLength(0);
+            for (long i = from; i < to; i++) {
+                int slot = (int) (i & mask);
+                if (kinds[slot] == PROGRESS) {
+                    batch.append("Generation: ").append(generations[slot]).append('\n')
+                            .append("Fitness of best gene: ").append(fitness[slot]).append('\n');
+                } else {
+                    batch.append(texts[slot]);
+                    texts[slot] = null;
+                }
+            }
+            if (lost > 0) {
+                batch.append("(").append(lost).append(" progress records dropped as output could not keep up)\n");
+            }
+
+            if (!failed) {
+                try {
+                    writer.append(batch);
+                    writer.flush();
+                } catch (IOException e) {
+                    // Output is not essential to the run, remaining records are discarded.
+                    e.printStackTrace();
+                    failed = true;
+                }
+            }
+
+            synchronized (this) {
+                head = to;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes every record posted so far, then stops the writer thread. Records posted afterwards are discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownsStream) {
+            writer.close();
+        } else {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package output;
+
+import geneticsteps.Gene;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Machine-readable format of the final result of a run.
+ */
+public class Results {
+
+    /**
+     * Returns {@param gene} as a single line of JSON, with the group (0-indexed) assigned to each Person Id in ascending order of Id, e.g.
+     * {@code {"fitness":0.0293,"groupCount":2,"assignments":{"0":1,"1":0,"2":0,"3":1}}}
+     */
+    public static String toJson(Gene gene) {
+        int[][] groups = gene.getGroupIds();
+        int count = 0;
+        for (int[] group : groups) {
+            count += group.length;
+        }
+
+        // Id in the upper half and group in the lower half, so sorting orders assignments by Id.
+        long[] assignments = new long[count];
+        int next = 0;
+        for (int i = 0; i < groups.length; i++) {
+            for (int id : groups[i]) {
+                assignments[next++] = ((long) id << 32) | i;
+            }
+        }
+        Arrays.sort(assignments);
+
+        StringBuilder json = new StringBuilder(32 + count * 8);
+        json.append("{\"fitness\":").append(gene.getFitness())
+                .append(",\"groupCount\":").append(groups.length)
+                .append(",\"assignments\":{");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "\"" : ",\"").append((int) (assignments[i] >>> 32)).append("\":").append((int) assignments[i]);
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Same as {@link #toJson(Gene)}, but starting with the name of the job {@param gene} was found by, e.g.
+     * {@code {"job":"section-a","fitness":0.0293,"groupCount":2,"assignments":{"0":1,"1":0,"2":0,"3":1}}}
+     */
+    public static String toJson(String job, Gene gene) {
+        String name = job.replace("\\", "\\\\").replace("\"", "\\\"");
+        return "{\"job\":\"" + name + "\"," + toJson(gene).substring(1);
+    }
+
+    /**
+     * Writes {@param gene} to {@param file} in the format of {@link #toJson(Gene)}.
+     */
+    public static void write(Gene gene, Path file) throws IOException {
+        Files.write(file, (toJson(gene) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the group of each Person Id from {@param file}, written by {@link #write(Gene, Path)} (or a line printed by a run).
+     * @return Group of each Person Id, in the order they appear in the file.
+     * @throws IOException If the file cannot be read or does not contain assignments.
+     */
+    public static Map<Integer, Integer> readAssignments(Path file) throws IOException {
+        String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        int start = json.indexOf("\"assignments\":{");
+        int end = start < 0 ? -1 : json.indexOf('}', start);
+        if (end < 0) {
+            throw new IOException("No assignments found in " + file);
+        }
+
+        Map<Integer, Integer> assignments = new LinkedHashMap<>();
+        String entries = json.substring(start + "\"assignments\":{".length(), end).trim();
+        if (entries.isEmpty()) {
+            return assignments;
+        }
+        for (String entry : entries.split(",")) {
+            String[] parts = entry.split(":");
+            try {
+                assignments.put(Integer.parseInt(parts[0].trim().replace("\"", "")), Integer.parseInt(parts[1].trim()));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Invalid assignment " + entry + " in " + file);
+            }
+        }
+        return assignments;
+    }
+}
@@ -0,0 +1,11 @@
+package output;
+
+/**
+ * Amount of output produced during a run, each level includes the output of every level before it.
+ */
+public enum Verbosity {
+    QUIET, // Final result only.
+    SUMMARY, // Fittest gene of the final population and cache statistics.
+    PROGRESS, // Fitness of best gene after every generation.
+    DEBUG // Every gene of the initial and final population.
+}
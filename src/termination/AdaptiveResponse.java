@@ -0,0 +1,35 @@
+package termination;
+
+import engine.GeneticEngine;
+
+/**
+ * Action applied to an engine when a TerminationRule is met, to give the run a chance to escape a local optimum.
+ */
+public interface AdaptiveResponse {
+
+    void apply(GeneticEngine engine);
+
+    /**
+     * Returns a response applying this response followed by {@param next}.
+     */
+    default AdaptiveResponse andThen(AdaptiveResponse next) {
+        return engine -> {
+            apply(engine);
+            next.apply(engine);
+        };
+    }
+
+    /**
+     * Multiplies mutation probability by {@param factor}, up to at most {@param max}.
+     */
+    static AdaptiveResponse raiseMutation(double factor, double max) {
+        return engine -> engine.setMutationProbability(Math.min(max, engine.getMutationProbability() * factor));
+    }
+
+    /**
+     * Replaces {@param fraction} of the population (its least fit genes) with new random genes.
+     */
+    static AdaptiveResponse reseed(double fraction) {
+        return engine -> engine.reseed((int) Math.ceil(engine.getPopulation().getGenes().size() * fraction));
+    }
+}
@@ -0,0 +1,41 @@
+package termination;
+
+import engine.GeneticEngine;
+
+/**
+ * Met when a run has used up its budget of generations, wall-clock time or evaluations.
+ * Evaluations are candidate genes created by Crossover or Mutation, swaps scored by local search do not count towards the budget.
+ */
+public class Budget extends TerminationRule {
+
+    public enum Kind {
+        GENERATIONS,
+        MILLIS,
+        EVALUATIONS
+    }
+
+    private final Kind kind;
+    private final long limit;
+
+    public Budget(Kind kind, long limit) {
+        this.kind = kind;
+        this.limit = limit;
+    }
+
+    @Override
+    protected boolean isMet(GeneticEngine engine, long elapsedNanos) {
+        switch (kind) {
+            case GENERATIONS:
+                return engine.getGeneration() >= limit;
+            case MILLIS:
+                return elapsedNanos / 1_000_000 >= limit;
+            default:
+                return engine.getEvaluationCount() >= limit;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "Used up budget of " + limit + " " + kind.name().toLowerCase();
+    }
+}
@@ -0,0 +1,25 @@
+package termination;
+
+import engine.GeneticEngine;
+
+/**
+ * Met when the ratio of genes forming a distinct grouping falls below a threshold, see {@link GeneticEngine#getDiversity()}.
+ */
+public class DiversityCollapse extends TerminationRule {
+
+    private final double minDiversity;
+
+    public DiversityCollapse(double minDiversity) {
+        this.minDiversity = minDiversity;
+    }
+
+    @Override
+    protected boolean isMet(GeneticEngine engine, long elapsedNanos) {
+        return engine.getGeneration() > 0 && engine.getDiversity() < minDiversity;
+    }
+
+    @Override
+    public String describe() {
+        return "Diversity fell below " + minDiversity;
+    }
+}
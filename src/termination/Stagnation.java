@@ -0,0 +1,60 @@
+package termination;
+
+import engine.GeneticEngine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Met when fitness of the best gene has not improved by more than a relative epsilon for a no. of generations.
+ */
+public class Stagnation extends TerminationRule {
+
+    private final int generations;
+    private final double epsilon;
+    private double best = Double.NEGATIVE_INFINITY;
+    private int lastImprovement = 0; // Generation in which best fitness last improved.
+
+    /**
+     * @param generations No. of generations without improvement before the rule is met.
+     * @param epsilon Min. improvement, relative to the best fitness so far, that counts as an improvement.
+     */
+    public Stagnation(int generations, double epsilon) {
+        this.generations = generations;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    protected boolean isMet(GeneticEngine engine, long elapsedNanos) {
+        double fitness = engine.getFittestGene().getFitness();
+        // The first check only sets the baseline, as the relative threshold of an infinite best would be NaN.
+        if (best == Double.NEGATIVE_INFINITY || fitness > best + Math.abs(best) * epsilon) {
+            best = fitness;
+            lastImprovement = engine.getGeneration();
+        }
+        return engine.getGeneration() - lastImprovement >= generations;
+    }
+
+    @Override
+    protected void reset(GeneticEngine engine) {
+        lastImprovement = engine.getGeneration();
+    }
+
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        out.writeDouble(best);
+        out.writeInt(lastImprovement);
+    }
+
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        best = in.readDouble();
+        lastImprovement = in.readInt();
+    }
+
+    @Override
+    public String describe() {
+        return "No improvement in " + generations + " generations";
+    }
+}
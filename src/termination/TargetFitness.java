@@ -0,0 +1,25 @@
+package termination;
+
+import engine.GeneticEngine;
+
+/**
+ * Met when fitness of the best gene reaches a target.
+ */
+public class TargetFitness extends TerminationRule {
+
+    private final double target;
+
+    public TargetFitness(double target) {
+        this.target = target;
+    }
+
+    @Override
+    protected boolean isMet(GeneticEngine engine, long elapsedNanos) {
+        return engine.getFittestGene().getFitness() >= target;
+    }
+
+    @Override
+    public String describe() {
+        return "Reached target fitness " + target;
+    }
+}
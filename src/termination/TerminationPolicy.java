@@ -0,0 +1,85 @@
+package termination;
+
+import engine.GeneticEngine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides when a run ends, from any no. of TerminationRules. The run ends as soon as any rule is met and has no adaptive responses left.
+ * A policy keeps state of the run it is checking, so each run (or island) needs its own policy.
+ */
+public class TerminationPolicy {
+
+    private final List<TerminationRule> rules = new ArrayList<>();
+    private long start = -1; // Time of the first check, taken as the start of the run.
+    private String reason;
+
+    /**
+     * Adds {@param rule} to the policy.
+     * @return This policy.
+     */
+    public TerminationPolicy add(TerminationRule rule) {
+        rules.add(rule);
+        return this;
+    }
+
+    /**
+     * Returns whether {@param engine} should stop before creating its next generation, applying adaptive responses of any rules met.
+     */
+    public boolean shouldStop(GeneticEngine engine) {
+        if (start < 0) {
+            start = System.nanoTime();
+        }
+        long elapsed = System.nanoTime() - start;
+        for (TerminationRule rule : rules) {
+            if (rule.check(engine, elapsed)) {
+                reason = rule.describe();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes state of the run so far (time elapsed and state of every rule) to {@param out}, see {@link #read(DataInput)}.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(start < 0 ? 0 : System.nanoTime() - start);
+        out.writeInt(rules.size());
+        for (TerminationRule rule : rules) {
+            out.writeUTF(rule.getClass().getName());
+            rule.write(out);
+        }
+    }
+
+    /**
+     * Reads state written by {@link #write(DataOutput)} from {@param in}, so the run continues as if it had never stopped:
+     * time budgets exclude the time in between, and rules keep their progress and adaptive responses used.
+     * @throws IOException If the state was written by a policy of different rules.
+     */
+    public void read(DataInput in) throws IOException {
+        long elapsed = in.readLong();
+        if (in.readInt() != rules.size()) {
+            throw new IOException("State was written by a policy of a different no. of termination rules");
+        }
+        for (TerminationRule rule : rules) {
+            String name = in.readUTF();
+            if (!name.equals(rule.getClass().getName())) {
+                throw new IOException("State was written by a policy with rule " + name + " instead of " + rule.getClass().getName());
+            }
+            rule.read(in);
+        }
+        start = System.nanoTime() - elapsed;
+    }
+
+    /**
+     * Returns reason the run ended, or null if it has not.
+     */
+    public String getReason() {
+        return reason;
+    }
+}
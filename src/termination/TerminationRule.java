@@ -0,0 +1,82 @@
+package termination;
+
+import engine.GeneticEngine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A condition for ending a run, checked by TerminationPolicy before every generation.
+ * A rule may be given an adaptive response, which is applied instead of ending the run the first few times the rule is met.
+ */
+public abstract class TerminationRule {
+
+    private AdaptiveResponse response;
+    private int responsesLeft = 0;
+
+    /**
+     * Returns whether the rule is met after the latest generation of {@param engine}.
+     * @param elapsedNanos Time since the run started.
+     */
+    protected abstract boolean isMet(GeneticEngine engine, long elapsedNanos);
+
+    /**
+     * Clears any state of the rule after an adaptive response has been applied, so it is not met again immediately.
+     */
+    protected void reset(GeneticEngine engine) {
+    }
+
+    /**
+     * Writes state of the rule kept between checks (besides adaptive responses left) to {@param out}, so a resumed run continues alike.
+     */
+    protected void writeState(DataOutput out) throws IOException {
+    }
+
+    /**
+     * Reads state written by {@link #writeState(DataOutput)} from {@param in}.
+     */
+    protected void readState(DataInput in) throws IOException {
+    }
+
+    /**
+     * Returns reason for ending the run, when this rule ended it.
+     */
+    public abstract String describe();
+
+    /**
+     * Applies {@param response} instead of ending the run the first {@param maxResponses} times this rule is met.
+     * @return This rule.
+     */
+    public TerminationRule withResponse(AdaptiveResponse response, int maxResponses) {
+        this.response = response;
+        this.responsesLeft = maxResponses;
+        return this;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(responsesLeft);
+        writeState(out);
+    }
+
+    void read(DataInput in) throws IOException {
+        responsesLeft = in.readInt();
+        readState(in);
+    }
+
+    /**
+     * Returns whether the run should end, applying the adaptive response instead if any are left.
+     */
+    boolean check(GeneticEngine engine, long elapsedNanos) {
+        if (!isMet(engine, elapsedNanos)) {
+            return false;
+        }
+        if (response != null && responsesLeft > 0) {
+            responsesLeft--;
+            response.apply(engine);
+            reset(engine);
+            return false;
+        }
+        return true;
+    }
+}
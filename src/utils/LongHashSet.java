@@ -0,0 +1,107 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive long values using open addressing, used to check for duplicate genes in constant time without boxing.
+ * Grows when more than half full, and can be cleared and reused without allocating.
+ */
+public class LongHashSet {
+
+    private long[] keys;
+    private boolean[] used;
+    private int mask;
+    private int size = 0;
+
+    /**
+     * Creates a set with space for {@param expected} values before growing.
+     */
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) * 2;
+        this.keys = new long[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds {@param key} to the set.
+     * @return True if {@param key} was not already in the set.
+     */
+    public boolean add(long key) {
+        int slot = findSlot(key);
+        if (used[slot]) {
+            return false;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether {@param key} is in the set.
+     */
+    public boolean contains(long key) {
+        return used[findSlot(key)];
+    }
+
+    /**
+     * Returns no. of values in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns every value in the set, in no particular order.
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int next = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                values[next++] = keys[i];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Removes every value from the set.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Returns slot containing {@param key}, or the empty slot it would be placed in (linear probing).
+     */
+    private int findSlot(long key) {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles capacity of the set, reinserting every value.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        used = new boolean[oldUsed.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findSlot(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+            }
+        }
+    }
+}